@@ -0,0 +1,298 @@
+package com.hazelcast.fcannizzohz;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.MapLoaderLifecycleSupport;
+import com.hazelcast.map.MapStore;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+
+/**
+ * JDBC MapStore of a map keyed by the {@code VARCHAR} primary key {@code id} of a table.
+ * <p>
+ * Subclasses provide the table, its columns ({@code id} first) and the mapping between a row and a value. Bulk
+ * operations are batched: {@link #loadAll(Collection)} runs chunked {@code IN} queries, {@link #loadAllKeys()}
+ * pages through the keys and {@link #storeAll(Map)}/{@link #deleteAll(Collection)} send JDBC batches in a single
+ * transaction, which makes the store suitable for write-behind.
+ * <p>
+ * When configured by class name, the connection settings are read from the MapStore properties:
+ * {@code jdbc.url} (required), {@code jdbc.user}, {@code jdbc.password}, {@code pool.size}, {@code batch.size} and
+ * {@code query.timeout.seconds}.
+ */
+public abstract class AbstractSQLMapStore<V>
+        implements MapStore<String, V>, MapLoaderLifecycleSupport {
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_POOL_SIZE = 8;
+
+    private final String selectSql;
+    private final String mergeSql;
+    private final String deleteSql;
+    private final String table;
+
+    private ConnectionPool pool;
+    private int batchSize;
+    private volatile int queryTimeoutSeconds;
+
+    /**
+     * Store configured through {@link #init(HazelcastInstance, Properties, String)}.
+     */
+    protected AbstractSQLMapStore(String table, List<String> columns) {
+        String columnList = String.join(", ", columns);
+        this.table = table;
+        this.selectSql = "SELECT " + columnList + " FROM " + table;
+        this.mergeSql = "MERGE INTO " + table + " (" + columnList + ") KEY(id) VALUES (" + String.join(", ",
+                Collections.nCopies(columns.size(), "?")) + ")";
+        this.deleteSql = "DELETE FROM " + table + " WHERE id = ?";
+    }
+
+    /**
+     * Store using a single connection: calls are serialized on it and the connection is left open on shutdown.
+     *
+     * @param batchSize maximum number of keys fetched by a single {@code SELECT ... WHERE id IN (...)} in
+     *                  {@link #loadAll(Collection)}, page size of {@link #loadAllKeys()} and number of statements sent
+     *                  per JDBC batch by {@link #storeAll(Map)} and {@link #deleteAll(Collection)}
+     */
+    protected AbstractSQLMapStore(String table, List<String> columns, Connection connection, int batchSize) {
+        this(table, columns);
+        this.pool = ConnectionPool.of(connection);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Store borrowing up to {@code poolSize} connections from {@code dataSource}, so that concurrent calls from
+     * different partition threads run in parallel. The connections are closed on shutdown.
+     */
+    protected AbstractSQLMapStore(String table, List<String> columns, DataSource dataSource, int poolSize, int batchSize) {
+        this(table, columns);
+        this.pool = new ConnectionPool(dataSource, poolSize);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Value stored in the current row of {@code rs}.
+     */
+    protected abstract V read(ResultSet rs)
+            throws SQLException;
+
+    /**
+     * Binds the columns of {@code value}, in the order the columns were declared, as parameters {@code 1..n}.
+     */
+    protected abstract void bind(PreparedStatement stmt, V value)
+            throws SQLException;
+
+    /**
+     * Bounds how long a read may wait on the database; a slower read fails with an {@code SQLTimeoutException}.
+     *
+     * @param queryTimeoutSeconds timeout in seconds, {@code 0} (the default) for no timeout
+     */
+    public AbstractSQLMapStore<V> setQueryTimeoutSeconds(int queryTimeoutSeconds) {
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+        return this;
+    }
+
+    @Override
+    public void init(HazelcastInstance hazelcastInstance, Properties properties, String mapName) {
+        String queryTimeout = properties.getProperty("query.timeout.seconds");
+        if (queryTimeout != null) {
+            queryTimeoutSeconds = Integer.parseInt(queryTimeout);
+        }
+        if (pool != null) {
+            return;
+        }
+        String url = properties.getProperty("jdbc.url");
+        if (url == null) {
+            throw new IllegalArgumentException("Missing property jdbc.url for the MapStore of map " + mapName);
+        }
+        int poolSize = Integer.parseInt(properties.getProperty("pool.size", String.valueOf(DEFAULT_POOL_SIZE)));
+        batchSize = Integer.parseInt(properties.getProperty("batch.size", String.valueOf(DEFAULT_BATCH_SIZE)));
+        pool = new ConnectionPool(url, properties.getProperty("jdbc.user"), properties.getProperty("jdbc.password"), poolSize);
+    }
+
+    @Override
+    public void destroy() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Override
+    public V load(String key) {
+        return pool.execute(connection -> {
+            PreparedStatement stmt = connection.prepare(selectSql + " WHERE id = ?");
+            stmt.setQueryTimeout(queryTimeoutSeconds);
+            stmt.setString(1, key);
+            try (var rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return read(rs);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Loads the keys in chunks of {@code batchSize}, one round trip per chunk. The last chunk is padded by repeating
+     * its last key, so every chunk goes through the same cached prepared statement.
+     */
+    @Override
+    public Map<String, V> loadAll(Collection<String> keys) {
+        List<String> ids = new ArrayList<>(keys);
+        Map<String, V> result = new HashMap<>();
+        if (ids.isEmpty()) {
+            return result;
+        }
+        return pool.execute(connection -> {
+            PreparedStatement stmt = connection.prepare(
+                    selectSql + " WHERE id IN (" + String.join(", ", Collections.nCopies(batchSize, "?")) + ")");
+            stmt.setQueryTimeout(queryTimeoutSeconds);
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                loadChunk(stmt, ids.subList(from, Math.min(from + batchSize, ids.size())), result);
+            }
+            return result;
+        });
+    }
+
+    private void loadChunk(PreparedStatement stmt, List<String> ids, Map<String, V> result)
+            throws SQLException {
+        for (int i = 0; i < batchSize; i++) {
+            stmt.setString(i + 1, ids.get(Math.min(i, ids.size() - 1)));
+        }
+        try (var rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                result.put(rs.getString("id"), read(rs));
+            }
+        }
+    }
+
+    /**
+     * Streams the ids one page of {@code batchSize} at a time, using keyset pagination on the primary key: only one
+     * page is held in memory and no connection is kept busy while Hazelcast dispatches the keys to the partitions.
+     */
+    @Override
+    public Iterable<String> loadAllKeys() {
+        return KeyIterator::new;
+    }
+
+    private final class KeyIterator
+            implements Iterator<String> {
+        private List<String> page = List.of();
+        private int position;
+        private boolean exhausted;
+
+        @Override
+        public boolean hasNext() {
+            if (position < page.size()) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
+            }
+            String last = page.isEmpty() ? null : page.get(page.size() - 1);
+            page = nextPage(last);
+            position = 0;
+            exhausted = page.size() < batchSize;
+            return !page.isEmpty();
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.get(position++);
+        }
+    }
+
+    private List<String> nextPage(String after) {
+        return pool.execute(connection -> {
+            PreparedStatement stmt;
+            if (after == null) {
+                stmt = connection.prepare("SELECT id FROM " + table + " ORDER BY id LIMIT ?");
+                stmt.setInt(1, batchSize);
+            } else {
+                stmt = connection.prepare("SELECT id FROM " + table + " WHERE id > ? ORDER BY id LIMIT ?");
+                stmt.setString(1, after);
+                stmt.setInt(2, batchSize);
+            }
+            stmt.setQueryTimeout(queryTimeoutSeconds);
+            List<String> ids = new ArrayList<>(batchSize);
+            try (var rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+            }
+            return ids;
+        });
+    }
+
+    @Override
+    public void store(String key, V value) {
+        pool.execute(connection -> {
+            PreparedStatement stmt = connection.prepare(mergeSql);
+            bind(stmt, value);
+            return stmt.executeUpdate();
+        });
+    }
+
+    /**
+     * Writes all entries of a write-behind flush as JDBC batches within a single transaction.
+     */
+    @Override
+    public void storeAll(Map<String, V> map) {
+        pool.inTransaction(connection -> {
+            PreparedStatement stmt = connection.prepare(mergeSql);
+            int pending = 0;
+            for (V value : map.values()) {
+                bind(stmt, value);
+                stmt.addBatch();
+                if (++pending == batchSize) {
+                    stmt.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                stmt.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    public void delete(String key) {
+        pool.execute(connection -> {
+            PreparedStatement stmt = connection.prepare(deleteSql);
+            stmt.setString(1, key);
+            return stmt.executeUpdate();
+        });
+    }
+
+    @Override
+    public void deleteAll(Collection<String> keys) {
+        pool.inTransaction(connection -> {
+            PreparedStatement stmt = connection.prepare(deleteSql);
+            int pending = 0;
+            for (String key : keys) {
+                stmt.setString(1, key);
+                stmt.addBatch();
+                if (++pending == batchSize) {
+                    stmt.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                stmt.executeBatch();
+            }
+        });
+    }
+}
@@ -0,0 +1,129 @@
+package com.hazelcast.fcannizzohz;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Moves order updates off Hazelcast's event threads: updates are queued in a bounded queue and handed to the
+ * callback in batches by a dedicated thread, so a slow callback never holds up event delivery.
+ * <p>
+ * When the queue is full the update is dropped rather than blocking the event thread; {@link #dropped()} tells how
+ * many updates were lost that way, together with the updates still pending when the dispatcher is closed.
+ */
+public final class BatchingOrderDispatcher
+        implements Consumer<Order>, AutoCloseable {
+
+    private final Consumer<List<Order>> callback;
+    private final OrderBatchingConfig config;
+    private final BlockingQueue<Order> queue;
+    private final Thread thread;
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private volatile boolean running = true;
+
+    BatchingOrderDispatcher(Consumer<List<Order>> callback, OrderBatchingConfig config) {
+        this.callback = callback;
+        this.config = config;
+        this.queue = new ArrayBlockingQueue<>(config.queueCapacity());
+        this.thread = new Thread(this::run, "order-update-dispatcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void accept(Order order) {
+        if (!running || !queue.offer(order)) {
+            dropped.incrementAndGet();
+        } else if (!running && queue.remove(order)) {
+            // closed between the check and the offer, possibly after close() drained the queue: whichever of the
+            // two takes the update out of the queue counts it
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void run() {
+        List<Order> batch = new ArrayList<>(config.maxBatchSize());
+        while (running) {
+            try {
+                Order first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + config.linger().toNanos();
+                while (batch.size() < config.maxBatchSize()) {
+                    Order next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                deliver(batch);
+            } catch (InterruptedException e) {
+                // closed while filling the batch: its updates are never delivered
+                dropped.addAndGet(batch.size());
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void deliver(List<Order> batch) {
+        try {
+            callback.accept(List.copyOf(batch));
+            delivered.addAndGet(batch.size());
+            batches.incrementAndGet();
+        } catch (RuntimeException e) {
+            // keep the dispatcher alive, the failure is accounted for in failedBatches()
+            failedBatches.incrementAndGet();
+        }
+    }
+
+    /** Number of updates handed to the callback. */
+    public long delivered() {
+        return delivered.get();
+    }
+
+    /** Number of updates dropped because the queue was full or the dispatcher was closed before delivering them. */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /** Number of successful callback invocations. */
+    public long batches() {
+        return batches.get();
+    }
+
+    /** Number of callback invocations that threw. */
+    public long failedBatches() {
+        return failedBatches.get();
+    }
+
+    /** Number of updates waiting for delivery. */
+    public int queued() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Order> undelivered = new ArrayList<>();
+        queue.drainTo(undelivered);
+        dropped.addAndGet(undelivered.size());
+    }
+}
@@ -0,0 +1,177 @@
+package com.hazelcast.fcannizzohz;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.MapLoaderLifecycleSupport;
+import com.hazelcast.map.MapStore;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker around the read-through path of a MapStore.
+ * <p>
+ * After {@code failureThreshold} consecutive failed loads the breaker opens: for {@code openDuration} loads fail
+ * immediately with {@link StoreUnavailableException} instead of waiting on the database. Then a single trial load
+ * is let through; its outcome closes the breaker or opens it again. Writes are passed through unchanged, so that
+ * write-behind keeps retrying on its own terms.
+ */
+public class CircuitBreakingMapStore<K, V>
+        implements MapStore<K, V>, MapLoaderLifecycleSupport {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final MapStore<K, V> delegate;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final AtomicLong maxLoadNanos = new AtomicLong();
+
+    public CircuitBreakingMapStore(MapStore<K, V> delegate, int failureThreshold, Duration openDuration) {
+        this.delegate = delegate;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    @Override
+    public V load(K key) {
+        return guarded(() -> delegate.load(key));
+    }
+
+    @Override
+    public Map<K, V> loadAll(Collection<K> keys) {
+        return guarded(() -> delegate.loadAll(keys));
+    }
+
+    @Override
+    public Iterable<K> loadAllKeys() {
+        return delegate.loadAllKeys();
+    }
+
+    @Override
+    public void store(K key, V value) {
+        delegate.store(key, value);
+    }
+
+    @Override
+    public void storeAll(Map<K, V> map) {
+        delegate.storeAll(map);
+    }
+
+    @Override
+    public void delete(K key) {
+        delegate.delete(key);
+    }
+
+    @Override
+    public void deleteAll(Collection<K> keys) {
+        delegate.deleteAll(keys);
+    }
+
+    @Override
+    public void init(HazelcastInstance hazelcastInstance, Properties properties, String mapName) {
+        if (delegate instanceof MapLoaderLifecycleSupport lifecycle) {
+            lifecycle.init(hazelcastInstance, properties, mapName);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (delegate instanceof MapLoaderLifecycleSupport lifecycle) {
+            lifecycle.destroy();
+        }
+    }
+
+    private <T> T guarded(Supplier<T> load) {
+        if (!tryAcquire()) {
+            rejections.increment();
+            throw new StoreUnavailableException("Circuit breaker open, load rejected");
+        }
+        long start = System.nanoTime();
+        try {
+            T result = load.get();
+            onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            failures.increment();
+            onFailure();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            loads.increment();
+            loadNanos.add(elapsed);
+            maxLoadNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    private synchronized boolean tryAcquire() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    yield false;
+                }
+                // let a single trial load through
+                state = State.HALF_OPEN;
+                yield true;
+            }
+            case HALF_OPEN -> false;
+        };
+    }
+
+    private synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    private synchronized void onFailure() {
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /** Number of loads that reached the delegate. */
+    public long loads() {
+        return loads.sum();
+    }
+
+    /** Number of loads that reached the delegate and failed. */
+    public long failures() {
+        return failures.sum();
+    }
+
+    /** Number of loads rejected while the breaker was open. */
+    public long rejections() {
+        return rejections.sum();
+    }
+
+    public Duration averageLoadLatency() {
+        long count = loads.sum();
+        return Duration.ofNanos(count == 0 ? 0 : loadNanos.sum() / count);
+    }
+
+    public Duration maxLoadLatency() {
+        return Duration.ofNanos(maxLoadNanos.get());
+    }
+}
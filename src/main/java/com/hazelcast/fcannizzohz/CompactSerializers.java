@@ -0,0 +1,110 @@
+package com.hazelcast.fcannizzohz;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.nio.serialization.FieldKind;
+import com.hazelcast.nio.serialization.compact.CompactReader;
+import com.hazelcast.nio.serialization.compact.CompactSerializer;
+import com.hazelcast.nio.serialization.compact.CompactWriter;
+
+/**
+ * Compact serializers for the records stored in the maps and exchanged by the Jet pipelines.
+ * <p>
+ * The records still implement {@code Serializable}: Hazelcast picks the deserializer from the type id stored with
+ * each value, so entries written with Java serialization before the serializers were registered remain readable,
+ * while every new write uses the Compact format.
+ */
+public final class CompactSerializers {
+
+    private CompactSerializers() {
+    }
+
+    /**
+     * Registers the serializers on a member ({@code Config.getSerializationConfig()}) or client
+     * ({@code ClientConfig.getSerializationConfig()}) serialization config.
+     */
+    public static SerializationConfig register(SerializationConfig config) {
+        config.getCompactSerializationConfig().addSerializer(new CustomerSerializer()).addSerializer(new OrderSerializer())
+              .addSerializer(new EnrichedOrderSerializer());
+        return config;
+    }
+
+    static final class CustomerSerializer
+            implements CompactSerializer<Customer> {
+        @Override
+        public Customer read(CompactReader reader) {
+            return new Customer(reader.readString("id"), reader.readString("name"));
+        }
+
+        @Override
+        public void write(CompactWriter writer, Customer customer) {
+            writer.writeString("id", customer.id());
+            writer.writeString("name", customer.name());
+        }
+
+        @Override
+        public String getTypeName() {
+            return "customer";
+        }
+
+        @Override
+        public Class<Customer> getCompactClass() {
+            return Customer.class;
+        }
+    }
+
+    static final class OrderSerializer
+            implements CompactSerializer<Order> {
+        @Override
+        public Order read(CompactReader reader) {
+            // orders written before the version field was introduced start at version 0
+            long version = reader.getFieldKind("version") == FieldKind.INT64 ? reader.readInt64("version") : 0;
+            return new Order(reader.readString("id"), reader.readString("customerId"), reader.readString("product"),
+                    reader.readBoolean("confirmed"), version);
+        }
+
+        @Override
+        public void write(CompactWriter writer, Order order) {
+            writer.writeString("id", order.id());
+            writer.writeString("customerId", order.customerId());
+            writer.writeString("product", order.product());
+            writer.writeBoolean("confirmed", order.confirmed());
+            writer.writeInt64("version", order.version());
+        }
+
+        @Override
+        public String getTypeName() {
+            return "order";
+        }
+
+        @Override
+        public Class<Order> getCompactClass() {
+            return Order.class;
+        }
+    }
+
+    static final class EnrichedOrderSerializer
+            implements CompactSerializer<EnrichedOrder> {
+        @Override
+        public EnrichedOrder read(CompactReader reader) {
+            return new EnrichedOrder(reader.readString("orderId"), reader.readString("customerName"),
+                    reader.readString("product"));
+        }
+
+        @Override
+        public void write(CompactWriter writer, EnrichedOrder order) {
+            writer.writeString("orderId", order.orderId());
+            writer.writeString("customerName", order.customerName());
+            writer.writeString("product", order.product());
+        }
+
+        @Override
+        public String getTypeName() {
+            return "enrichedOrder";
+        }
+
+        @Override
+        public Class<EnrichedOrder> getCompactClass() {
+            return EnrichedOrder.class;
+        }
+    }
+}
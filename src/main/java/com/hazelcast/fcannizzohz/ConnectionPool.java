@@ -0,0 +1,218 @@
+package com.hazelcast.fcannizzohz;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of JDBC connections for the map stores. Hazelcast calls a MapStore from many partition threads at
+ * once: each call borrows a connection for its own exclusive use, and each connection keeps its prepared statements
+ * so that they are parsed once per connection rather than once per call.
+ */
+final class ConnectionPool
+        implements AutoCloseable {
+
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+    private static final long BORROW_RETRY_MILLIS = 100;
+
+    interface ConnectionFactory {
+        Connection open()
+                throws SQLException;
+    }
+
+    interface SqlFunction<T> {
+        T apply(PooledConnection connection)
+                throws SQLException;
+    }
+
+    interface SqlConsumer {
+        void accept(PooledConnection connection)
+                throws SQLException;
+    }
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final boolean ownsConnections;
+    private final BlockingQueue<PooledConnection> idle = new LinkedBlockingQueue<>();
+    private final Queue<PooledConnection> all = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger opened = new AtomicInteger();
+
+    ConnectionPool(DataSource dataSource, int maxSize) {
+        this(dataSource::getConnection, maxSize, true);
+    }
+
+    ConnectionPool(String url, String user, String password, int maxSize) {
+        this(() -> DriverManager.getConnection(url, user, password), maxSize, true);
+    }
+
+    private ConnectionPool(ConnectionFactory factory, int maxSize, boolean ownsConnections) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.ownsConnections = ownsConnections;
+    }
+
+    /**
+     * Pool of the single connection given; the connection stays open when the pool is closed.
+     */
+    static ConnectionPool of(Connection connection) {
+        return new ConnectionPool(() -> connection, 1, false);
+    }
+
+    int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Runs {@code fn} on a borrowed connection. A connection whose call failed with an {@link SQLException} may be
+     * broken, so it is closed and replaced by a new one on a later borrow rather than returned to the pool; the single
+     * connection of {@link #of(Connection)} is not the pool's to close and is always kept.
+     */
+    <T> T execute(SqlFunction<T> fn) {
+        PooledConnection connection = borrow();
+        boolean healthy = false;
+        try {
+            T result = fn.apply(connection);
+            healthy = true;
+            return result;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } catch (RuntimeException | Error e) {
+            healthy = true;
+            throw e;
+        } finally {
+            if (healthy || !ownsConnections) {
+                idle.offer(connection);
+            } else {
+                discard(connection);
+            }
+        }
+    }
+
+    void inTransaction(SqlConsumer fn) {
+        execute(pooled -> {
+            Connection connection = pooled.connection();
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                fn.accept(pooled);
+                connection.commit();
+                return null;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    private PooledConnection borrow() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(BORROW_TIMEOUT_SECONDS);
+        while (true) {
+            PooledConnection connection = idle.poll();
+            if (connection != null) {
+                return connection;
+            }
+            if (opened.incrementAndGet() <= maxSize) {
+                try {
+                    connection = new PooledConnection(factory.open());
+                } catch (SQLException e) {
+                    opened.decrementAndGet();
+                    throw new RuntimeException(e);
+                }
+                all.add(connection);
+                return connection;
+            }
+            opened.decrementAndGet();
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new RuntimeException(
+                        new SQLException("No connection available after " + BORROW_TIMEOUT_SECONDS + "s"));
+            }
+            // wake up now and then: a discarded connection frees a slot without returning anything to the idle queue
+            try {
+                connection = idle.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(BORROW_RETRY_MILLIS)),
+                        TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            if (connection != null) {
+                return connection;
+            }
+        }
+    }
+
+    private void discard(PooledConnection connection) {
+        all.remove(connection);
+        try {
+            connection.close(true);
+        } catch (SQLException e) {
+            // already broken, nothing more to release
+        }
+        opened.decrementAndGet();
+    }
+
+    @Override
+    public void close() {
+        for (PooledConnection connection : all) {
+            try {
+                connection.close(ownsConnections);
+            } catch (SQLException e) {
+                // best effort, keep closing the others
+            }
+        }
+        all.clear();
+        idle.clear();
+    }
+
+    static final class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        Connection connection() {
+            return connection;
+        }
+
+        /**
+         * Prepared statement for {@code sql}, cached on this connection. Callers must not close it.
+         */
+        PreparedStatement prepare(String sql)
+                throws SQLException {
+            PreparedStatement stmt = statements.get(sql);
+            if (stmt == null) {
+                stmt = connection.prepareStatement(sql);
+                statements.put(sql, stmt);
+            }
+            return stmt;
+        }
+
+        private void close(boolean closeConnection)
+                throws SQLException {
+            for (PreparedStatement stmt : statements.values()) {
+                stmt.close();
+            }
+            statements.clear();
+            if (closeConnection) {
+                connection.close();
+            }
+        }
+    }
+}
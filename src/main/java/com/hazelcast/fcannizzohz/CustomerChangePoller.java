@@ -0,0 +1,127 @@
+package com.hazelcast.fcannizzohz;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the {@code customers} map in sync with changes made to the {@code customers} table by other systems,
+ * without evicting the whole map.
+ * <p>
+ * The table must have a {@code version} column that is set from a monotonically increasing sequence on every
+ * insert and update. Every {@code interval} the rows with a version above the last applied one are read,
+ * {@code batchSize} rows per query, and put in the map with {@code putTransient}, which does not write them back
+ * through the MapStore. Deleted rows are not detected.
+ */
+public class CustomerChangePoller
+        implements AutoCloseable {
+
+    private final HazelcastInstance instance;
+    private final ConnectionPool pool;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong appliedVersion = new AtomicLong();
+    private final AtomicLong latestVersion = new AtomicLong();
+    private final AtomicLong appliedRows = new AtomicLong();
+    private final AtomicLong failedPolls = new AtomicLong();
+
+    public CustomerChangePoller(HazelcastInstance instance, Connection connection, Duration interval, int batchSize) {
+        this(instance, ConnectionPool.of(connection), interval, batchSize);
+    }
+
+    public CustomerChangePoller(HazelcastInstance instance, DataSource dataSource, Duration interval, int batchSize) {
+        this(instance, new ConnectionPool(dataSource, 1), interval, batchSize);
+    }
+
+    private CustomerChangePoller(HazelcastInstance instance, ConnectionPool pool, Duration interval, int batchSize) {
+        this.instance = instance;
+        this.pool = pool;
+        this.batchSize = batchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "customer-change-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+        try {
+            latestVersion.set(pool.execute(connection -> {
+                try (var rs = connection.prepare("SELECT MAX(version) FROM customers").executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
+            }));
+            Changes changes;
+            do {
+                changes = nextChanges();
+                IMap<String, Customer> customers = instance.getMap("customers");
+                changes.customers().forEach(customer -> customers.putTransient(customer.id(), customer, -1, TimeUnit.SECONDS));
+                // only once the whole batch is in the map, so that a failed batch is read again by the next poll
+                if (!changes.customers().isEmpty()) {
+                    appliedVersion.set(changes.maxVersion());
+                }
+                appliedRows.addAndGet(changes.customers().size());
+            } while (changes.customers().size() == batchSize);
+        } catch (RuntimeException e) {
+            // keep polling, the failure shows up in failedPolls() and in a growing lag()
+            failedPolls.incrementAndGet();
+        }
+    }
+
+    private record Changes(List<Customer> customers, long maxVersion) {
+    }
+
+    private Changes nextChanges() {
+        return pool.execute(connection -> {
+            PreparedStatement stmt = connection.prepare(
+                    "SELECT id, name, version FROM customers WHERE version > ? ORDER BY version LIMIT ?");
+            stmt.setLong(1, appliedVersion.get());
+            stmt.setInt(2, batchSize);
+            List<Customer> customers = new ArrayList<>(batchSize);
+            long maxVersion = 0;
+            try (var rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    customers.add(new Customer(rs.getString("id"), rs.getString("name")));
+                    maxVersion = rs.getLong("version");
+                }
+            }
+            return new Changes(customers, maxVersion);
+        });
+    }
+
+    /** Highest table version applied to the map. */
+    public long appliedVersion() {
+        return appliedVersion.get();
+    }
+
+    /** Number of versions the map is behind the table, as of the start of the last poll. */
+    public long lag() {
+        return Math.max(0, latestVersion.get() - appliedVersion.get());
+    }
+
+    /** Number of changed rows applied to the map. */
+    public long appliedRows() {
+        return appliedRows.get();
+    }
+
+    public long failedPolls() {
+        return failedPolls.get();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        pool.close();
+    }
+}
@@ -1,7 +1,24 @@
 package com.hazelcast.fcannizzohz;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
 public interface CustomerService {
     Customer findCustomer(String number);
 
+    CompletionStage<Customer> findCustomerAsync(String id);
+
+    /**
+     * Looks up several customers at once.
+     *
+     * @return the customers found, keyed by id; unknown ids are absent from the result
+     */
+    Map<String, Customer> findCustomers(Collection<String> ids);
+
     void save(Customer customer);
+
+    CompletionStage<Void> saveAsync(Customer customer);
+
+    void saveAll(Collection<Customer> customers);
 }
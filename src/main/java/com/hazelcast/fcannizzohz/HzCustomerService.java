@@ -1,7 +1,20 @@
 package com.hazelcast.fcannizzohz;
 
+import com.hazelcast.config.Config;
+import com.hazelcast.config.EvictionConfig;
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.MaxSizePolicy;
+import com.hazelcast.config.NearCacheConfig;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.map.IMap;
+import com.hazelcast.nearcache.NearCacheStats;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
 
 public class HzCustomerService
         implements CustomerService {
@@ -11,6 +24,35 @@ public class HzCustomerService
         this.instance = instance;
     }
 
+    /**
+     * Near cache for the {@code customers} map, to be added to a member {@code Config} (see
+     * {@link #configureNearCache(Config, int, EvictionPolicy)}) or to a {@code ClientConfig}.
+     * <p>
+     * Entries are invalidated whenever the customer is updated, removed or evicted in the cluster. Invalidations
+     * reach the other members asynchronously, so for a short while after a change a member may still serve the old
+     * value: the near cache is eventually consistent, only the member making the change reads its own write at once.
+     * Changes made directly in the database are not seen until the entry is evicted or reloaded. Values are kept
+     * deserialized, as {@link Customer} is immutable.
+     *
+     * @param maxSize        maximum number of customers held in the near cache
+     * @param evictionPolicy policy used to pick the entries to evict once {@code maxSize} is reached
+     */
+    public static NearCacheConfig nearCacheConfig(int maxSize, EvictionPolicy evictionPolicy) {
+        EvictionConfig eviction = new EvictionConfig().setMaxSizePolicy(MaxSizePolicy.ENTRY_COUNT).setSize(maxSize)
+                                                      .setEvictionPolicy(evictionPolicy);
+        return new NearCacheConfig("customers").setInMemoryFormat(InMemoryFormat.OBJECT).setInvalidateOnChange(true)
+                                               .setCacheLocalEntries(true).setEvictionConfig(eviction);
+    }
+
+    /**
+     * Enables the near cache read path of {@link #findCustomer(String)} on an embedded member.
+     * Must be applied before the member is started.
+     */
+    public static Config configureNearCache(Config config, int maxSize, EvictionPolicy evictionPolicy) {
+        config.getMapConfig("customers").setNearCacheConfig(nearCacheConfig(maxSize, evictionPolicy));
+        return config;
+    }
+
     @Override
     public Customer findCustomer(String id) {
         try {
@@ -20,6 +62,24 @@ public class HzCustomerService
         }
     }
 
+    @Override
+    public CompletionStage<Customer> findCustomerAsync(String id) {
+        return ServiceException.wrapFailures(customerMap().getAsync(id), "Find customer failed");
+    }
+
+    /**
+     * Resolves all ids with a single {@code getAll}: Hazelcast groups the keys by partition owner, so the cost is
+     * one round trip per member rather than one per id.
+     */
+    @Override
+    public Map<String, Customer> findCustomers(Collection<String> ids) {
+        try {
+            return customerMap().getAll(new HashSet<>(ids));
+        } catch (Exception e) {
+            throw new ServiceException("Find customers failed", e);
+        }
+    }
+
     public void save(Customer customer) {
         try {
             customerMap().put(customer.id(), customer);
@@ -28,6 +88,29 @@ public class HzCustomerService
         }
     }
 
+    @Override
+    public CompletionStage<Void> saveAsync(Customer customer) {
+        return ServiceException.wrapFailures(customerMap().setAsync(customer.id(), customer), "Save customer failed");
+    }
+
+    @Override
+    public void saveAll(Collection<Customer> customers) {
+        Map<String, Customer> entries = new HashMap<>();
+        customers.forEach(c -> entries.put(c.id(), c));
+        try {
+            customerMap().putAll(entries);
+        } catch (Exception e) {
+            throw new ServiceException("Save customers failed", e);
+        }
+    }
+
+    /**
+     * Hit/miss statistics of the customers near cache, or {@code null} if no near cache is configured.
+     */
+    public NearCacheStats nearCacheStats() {
+        return customerMap().getLocalMapStats().getNearCacheStats();
+    }
+
     private IMap<String, Customer> customerMap() {
         return instance.getMap("customers");
     }
@@ -1,12 +1,27 @@
 package com.hazelcast.fcannizzohz;
 
+import com.hazelcast.config.Config;
+import com.hazelcast.config.IndexConfig;
+import com.hazelcast.config.IndexType;
+import com.hazelcast.config.PartitioningStrategyConfig;
 import com.hazelcast.core.EntryEvent;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+import com.hazelcast.map.EntryProcessor;
 import com.hazelcast.map.IMap;
 import com.hazelcast.map.listener.EntryUpdatedListener;
+import com.hazelcast.partition.strategy.StringPartitioningStrategy;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 class OrderUpdatedListener
         implements EntryUpdatedListener<String, Order>, Serializable {
@@ -23,19 +38,184 @@ class OrderUpdatedListener
     }
 }
 
+class OrderKeyUpdatedListener
+        implements EntryUpdatedListener<String, Order>, Serializable {
+
+    private final Consumer<String> listener;
+
+    OrderKeyUpdatedListener(Consumer<String> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void entryUpdated(EntryEvent<String, Order> event) {
+        listener.accept(event.getKey());
+    }
+}
+
+/**
+ * Runs on the member owning the customer: validates the customer and stores the co-located order in the same
+ * partition, so no other operation can remove the customer in between.
+ */
+class PlaceOrderProcessor
+        implements EntryProcessor<String, Customer, Boolean>, HazelcastInstanceAware {
+
+    private final Order order;
+    private transient HazelcastInstance instance;
+
+    PlaceOrderProcessor(Order order) {
+        this.order = order;
+    }
+
+    @Override
+    public void setHazelcastInstance(HazelcastInstance instance) {
+        this.instance = instance;
+    }
+
+    @Override
+    public Boolean process(Map.Entry<String, Customer> entry) {
+        if (entry.getValue() == null) {
+            return false;
+        }
+        // Same partition as the customer: executed inline on this partition thread
+        instance.<String, Order>getMap("orders").set(order.id(), order);
+        return true;
+    }
+
+    @Override
+    public EntryProcessor<String, Customer, Boolean> getBackupProcessor() {
+        // the customer entry is not modified, the order put is backed up by its own operation
+        return null;
+    }
+}
+
+class UpdateOrderProcessor
+        implements EntryProcessor<String, Order, Boolean> {
+
+    private final OrderUpdate update;
+
+    UpdateOrderProcessor(OrderUpdate update) {
+        this.update = update;
+    }
+
+    @Override
+    public Boolean process(Map.Entry<String, Order> entry) {
+        if (entry.getValue() == null) {
+            return false;
+        }
+        Order current = entry.getValue();
+        entry.setValue(update.apply(current).withVersion(current.version() + 1));
+        return true;
+    }
+}
+
 public class HzOrderService
-        implements OrderService {
+        implements OrderService, AutoCloseable {
     private final HazelcastInstance instance;
+    private final boolean colocated;
+    private final BatchingOrderDispatcher dispatcher;
+    private final UUID listenerId;
 
     public HzOrderService(HazelcastInstance hz) {
         this(hz, null);
     }
 
     public HzOrderService(HazelcastInstance hz, Consumer<Order> onEntryUpdatedCallback) {
+        this(hz, onEntryUpdatedCallback, false);
+    }
+
+    /**
+     * @param colocated when {@code true}, orders are stored in the partition of their customer and
+     *                  {@link #placeOrder(Order)} validates and inserts in a single operation. Order ids must then be
+     *                  built with {@link #colocatedId(String, String)} and the cluster configured with
+     *                  {@link #configureColocation(Config)}.
+     */
+    public HzOrderService(HazelcastInstance hz, Consumer<Order> onEntryUpdatedCallback, boolean colocated) {
         this.instance = hz;
-        if (onEntryUpdatedCallback != null) {
-            orderMap().addEntryListener(new OrderUpdatedListener(onEntryUpdatedCallback), true);
+        this.colocated = colocated;
+        this.dispatcher = null;
+        this.listenerId = onEntryUpdatedCallback == null ? null
+                : orderMap().addEntryListener(new OrderUpdatedListener(onEntryUpdatedCallback), true);
+    }
+
+    /**
+     * Delivers order updates in micro-batches on a dedicated thread instead of one by one on Hazelcast's event
+     * threads. Call {@link #close()} to stop the delivery.
+     */
+    public HzOrderService(HazelcastInstance hz, Consumer<List<Order>> onEntriesUpdatedCallback, OrderBatchingConfig batching) {
+        this.instance = hz;
+        this.colocated = false;
+        this.dispatcher = new BatchingOrderDispatcher(onEntriesUpdatedCallback, batching);
+        this.listenerId = orderMap().addEntryListener(new OrderUpdatedListener(dispatcher), true);
+    }
+
+    /**
+     * Partitions the {@code orders} map on the part of the key following {@code '@'}, i.e. the customer id of
+     * ids built with {@link #colocatedId(String, String)}. Must be applied to every member before it starts.
+     */
+    public static Config configureColocation(Config config) {
+        config.getMapConfig("orders").setPartitioningStrategyConfig(
+                new PartitioningStrategyConfig(StringPartitioningStrategy.class.getName()));
+        return config;
+    }
+
+    /**
+     * Adds the indexes backing {@link #findOrdersByCustomer(String)} and {@link #findOrders(boolean)}; without them
+     * the queries scan every order.
+     */
+    public static Config configureIndexes(Config config) {
+        config.getMapConfig("orders").addIndexConfig(new IndexConfig(IndexType.HASH, "customerId"))
+              .addIndexConfig(new IndexConfig(IndexType.HASH, "confirmed"));
+        return config;
+    }
+
+    /**
+     * Order id that lands in the same partition as the given customer when co-location is configured. The
+     * partition key is the text after the first {@code @}, so {@code orderId} must not contain one.
+     */
+    public static String colocatedId(String orderId, String customerId) {
+        if (orderId.indexOf('@') >= 0) {
+            throw new IllegalArgumentException("Order id must not contain '@': " + orderId);
         }
+        return orderId + "@" + customerId;
+    }
+
+    /**
+     * Subscribes to the updates of the orders matching {@code filter}. The predicate is evaluated by the members
+     * owning the orders, so non-matching updates are never sent to the subscriber.
+     *
+     * @param filter    server-side filter, e.g. {@code Predicates.equal("confirmed", true)}; {@code null} matches all
+     * @param localOnly only receive updates of the orders owned by this member; not supported on clients
+     * @return the subscription id, to be passed to {@link #unsubscribe(UUID)}
+     */
+    public UUID subscribe(Predicate<String, Order> filter, boolean localOnly, Consumer<Order> callback) {
+        return addListener(new OrderUpdatedListener(callback), filter, localOnly, true);
+    }
+
+    /**
+     * Like {@link #subscribe(Predicate, boolean, Consumer)} but only the id of the updated order is delivered: the
+     * order itself is neither sent over the network nor deserialized.
+     */
+    public UUID subscribeKeys(Predicate<String, Order> filter, boolean localOnly, Consumer<String> callback) {
+        return addListener(new OrderKeyUpdatedListener(callback), filter, localOnly, false);
+    }
+
+    public void unsubscribe(UUID subscriptionId) {
+        orderMap().removeEntryListener(subscriptionId);
+    }
+
+    private UUID addListener(EntryUpdatedListener<String, Order> listener, Predicate<String, Order> filter,
+                             boolean localOnly, boolean includeValue) {
+        Predicate<String, Order> predicate = filter == null ? Predicates.alwaysTrue() : filter;
+        return localOnly ? orderMap().addLocalEntryListener(listener, predicate, includeValue)
+                : orderMap().addEntryListener(listener, predicate, includeValue);
+    }
+
+    /**
+     * Delivery metrics of the batched update callback, or {@code null} if updates are not batched.
+     */
+    public BatchingOrderDispatcher dispatcher() {
+        return dispatcher;
     }
 
     private IMap<String, Order> orderMap() {
@@ -48,6 +228,13 @@ public class HzOrderService
 
     @Override
     public void placeOrder(Order order) {
+        if (colocated) {
+            checkColocated(order);
+            if (!customerMap().executeOnKey(order.customerId(), new PlaceOrderProcessor(order))) {
+                throw new IllegalStateException("Customer does not exist: " + order.customerId());
+            }
+            return;
+        }
         // Enrich or validate order using shared customer state
         Customer customer = customerMap().get(order.customerId());
         if (customer == null) {
@@ -56,15 +243,104 @@ public class HzOrderService
         updateOrder(order);
     }
 
+    @Override
+    public CompletionStage<Void> placeOrderAsync(Order order) {
+        if (colocated) {
+            checkColocated(order);
+            return ServiceException.wrapFailures(
+                    customerMap().submitToKey(order.customerId(), new PlaceOrderProcessor(order)),
+                    "Place order failed").thenAccept(placed -> {
+                if (!placed) {
+                    throw new IllegalStateException("Customer does not exist: " + order.customerId());
+                }
+            });
+        }
+        return ServiceException.wrapFailures(customerMap().getAsync(order.customerId()), "Place order failed")
+                               .thenCompose(customer -> {
+                                   if (customer == null) {
+                                       throw new IllegalStateException("Customer does not exist: " + order.customerId());
+                                   }
+                                   return ServiceException.wrapFailures(orderMap().setAsync(order.id(), order),
+                                           "Place order failed");
+                               });
+    }
+
     @Override
     public Order getOrder(String id) {
         return orderMap().get(id);
     }
 
+    @Override
+    public CompletionStage<Order> getOrderAsync(String id) {
+        return ServiceException.wrapFailures(orderMap().getAsync(id), "Get order failed");
+    }
+
     @Override
     public void updateOrder(Order order) {
         orderMap().put(order.id(), order);
     }
 
+    @Override
+    public Collection<Order> findOrdersByCustomer(String customerId) {
+        return orderMap().values(Predicates.equal("customerId", customerId));
+    }
+
+    @Override
+    public Collection<Order> findOrders(boolean confirmed) {
+        return orderMap().values(Predicates.equal("confirmed", confirmed));
+    }
+
+    /**
+     * Runs {@code update} on the member owning the order: the order is not shipped to the caller and concurrent
+     * updates of the same order are applied one after the other on its partition.
+     */
+    @Override
+    public boolean updateOrder(String id, OrderUpdate update) {
+        return orderMap().executeOnKey(id, new UpdateOrderProcessor(update));
+    }
+
+    /**
+     * Compare-and-set loop on {@code IMap.replace(key, expected, new)}: writers never block each other, a writer that
+     * loses the race reads the new value and tries again.
+     */
+    @Override
+    public Order updateOrderOptimistically(String id, UnaryOperator<Order> update, int maxRetries) {
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            Order current = orderMap().get(id);
+            if (current == null) {
+                return null;
+            }
+            Order next = update.apply(current).withVersion(current.version() + 1);
+            if (orderMap().replace(id, current, next)) {
+                return next;
+            }
+        }
+        throw new ServiceException("Update order failed: concurrent modification of " + id);
+    }
+
+    @Override
+    public boolean confirmOrder(String id) {
+        return updateOrder(id, Order::confirm);
+    }
+
+    /**
+     * Stops the update callback, if any.
+     */
+    @Override
+    public void close() {
+        if (listenerId != null) {
+            orderMap().removeEntryListener(listenerId);
+        }
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+    }
+
+    private static void checkColocated(Order order) {
+        if (!order.customerId().equals(StringPartitioningStrategy.getPartitionKey(order.id()))) {
+            throw new IllegalArgumentException("Order id is not co-located with customer " + order.customerId() + ": " + order.id());
+        }
+    }
+
 }
 
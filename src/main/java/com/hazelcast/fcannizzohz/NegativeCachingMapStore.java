@@ -0,0 +1,168 @@
+package com.hazelcast.fcannizzohz;
+
+import com.hazelcast.cluster.MembershipEvent;
+import com.hazelcast.cluster.MembershipListener;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.MapLoaderLifecycleSupport;
+import com.hazelcast.map.MapStore;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the keys the database does not know about, so that repeated lookups of missing keys do not query it.
+ * <p>
+ * Hazelcast never caches a {@code null} load, hence without this every {@code get} of an unknown key reaches the
+ * MapStore. Missing keys are kept for {@code ttl} in a cache bounded to {@code maxSize} keys (least recently used
+ * keys are dropped first) and forgotten as soon as a value is stored for them.
+ * <p>
+ * The cache is local to the member: a value stored while the partition of a key is owned by another member is not
+ * seen here. Partitions only change owner when members join or leave, so the whole cache is cleared on every
+ * membership change. Values written to the database outside of Hazelcast are still only seen once their key
+ * expires, so keep {@code ttl} short.
+ */
+public class NegativeCachingMapStore<K, V>
+        implements MapStore<K, V>, MapLoaderLifecycleSupport {
+
+    private final MapStore<K, V> delegate;
+    private final long ttlNanos;
+    private final Map<K, Long> missing;
+    private final LongAdder hits = new LongAdder();
+    private HazelcastInstance instance;
+    private UUID membershipListenerId;
+
+    public NegativeCachingMapStore(MapStore<K, V> delegate, int maxSize, Duration ttl) {
+        this.delegate = delegate;
+        this.ttlNanos = ttl.toNanos();
+        this.missing = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Long> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public V load(K key) {
+        if (isKnownMissing(key)) {
+            hits.increment();
+            return null;
+        }
+        V value = delegate.load(key);
+        if (value == null) {
+            markMissing(List.of(key));
+        }
+        return value;
+    }
+
+    @Override
+    public Map<K, V> loadAll(Collection<K> keys) {
+        List<K> toLoad = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            if (isKnownMissing(key)) {
+                hits.increment();
+            } else {
+                toLoad.add(key);
+            }
+        }
+        if (toLoad.isEmpty()) {
+            return Map.of();
+        }
+        Map<K, V> loaded = delegate.loadAll(toLoad);
+        markMissing(toLoad.stream().filter(key -> !loaded.containsKey(key)).toList());
+        return loaded;
+    }
+
+    @Override
+    public Iterable<K> loadAllKeys() {
+        return delegate.loadAllKeys();
+    }
+
+    @Override
+    public void store(K key, V value) {
+        forget(List.of(key));
+        delegate.store(key, value);
+    }
+
+    @Override
+    public void storeAll(Map<K, V> map) {
+        forget(map.keySet());
+        delegate.storeAll(map);
+    }
+
+    @Override
+    public void delete(K key) {
+        delegate.delete(key);
+    }
+
+    @Override
+    public void deleteAll(Collection<K> keys) {
+        delegate.deleteAll(keys);
+    }
+
+    @Override
+    public void init(HazelcastInstance hazelcastInstance, Properties properties, String mapName) {
+        instance = hazelcastInstance;
+        membershipListenerId = hazelcastInstance.getCluster().addMembershipListener(new MembershipListener() {
+            @Override
+            public void memberAdded(MembershipEvent membershipEvent) {
+                clear();
+            }
+
+            @Override
+            public void memberRemoved(MembershipEvent membershipEvent) {
+                clear();
+            }
+        });
+        if (delegate instanceof MapLoaderLifecycleSupport lifecycle) {
+            lifecycle.init(hazelcastInstance, properties, mapName);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (membershipListenerId != null) {
+            instance.getCluster().removeMembershipListener(membershipListenerId);
+        }
+        if (delegate instanceof MapLoaderLifecycleSupport lifecycle) {
+            lifecycle.destroy();
+        }
+    }
+
+    /** Number of lookups answered from the negative cache, without querying the delegate. */
+    public long hits() {
+        return hits.sum();
+    }
+
+    private synchronized boolean isKnownMissing(K key) {
+        Long expiresAt = missing.get(key);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - expiresAt >= 0) {
+            missing.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    private synchronized void markMissing(Collection<K> keys) {
+        long expiresAt = System.nanoTime() + ttlNanos;
+        keys.forEach(key -> missing.put(key, expiresAt));
+    }
+
+    private synchronized void forget(Collection<K> keys) {
+        keys.forEach(missing::remove);
+    }
+
+    private synchronized void clear() {
+        missing.clear();
+    }
+}
@@ -2,14 +2,25 @@ package com.hazelcast.fcannizzohz;
 
 import java.io.Serializable;
 
-public record Order(String id, String customerId, String product, boolean confirmed)
+/**
+ * @param version incremented on every update made through {@link OrderService}, used for optimistic concurrency
+ */
+public record Order(String id, String customerId, String product, boolean confirmed, long version)
         implements Serializable {
 
     public Order(String id, String customerId, String product) {
         this(id, customerId, product, false);
     }
 
+    public Order(String id, String customerId, String product, boolean confirmed) {
+        this(id, customerId, product, confirmed, 0);
+    }
+
     public Order confirm() {
-        return new Order(id, customerId, product, true);
+        return new Order(id, customerId, product, true, version);
+    }
+
+    public Order withVersion(long version) {
+        return new Order(id, customerId, product, confirmed, version);
     }
 }
@@ -0,0 +1,19 @@
+package com.hazelcast.fcannizzohz;
+
+import java.time.Duration;
+
+/**
+ * Settings of the micro-batched delivery of order updates.
+ *
+ * @param maxBatchSize  maximum number of orders handed to the callback in one call
+ * @param linger        how long to wait for more updates once the first one of a batch arrived
+ * @param queueCapacity maximum number of updates waiting for delivery; further updates are dropped and counted
+ */
+public record OrderBatchingConfig(int maxBatchSize, Duration linger, int queueCapacity) {
+
+    public OrderBatchingConfig {
+        if (maxBatchSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("maxBatchSize and queueCapacity must be positive");
+        }
+    }
+}
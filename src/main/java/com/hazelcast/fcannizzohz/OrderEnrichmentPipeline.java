@@ -1,16 +1,176 @@
 package com.hazelcast.fcannizzohz;
 
+import com.hazelcast.config.Config;
+import com.hazelcast.core.EntryEventType;
+import com.hazelcast.core.ReadOnly;
 import com.hazelcast.function.BiFunctionEx;
+import com.hazelcast.function.FunctionEx;
+import com.hazelcast.function.PredicateEx;
+import com.hazelcast.jet.JetService;
+import com.hazelcast.jet.Job;
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.Traversers;
+import com.hazelcast.jet.Util;
+import com.hazelcast.jet.config.JobConfig;
+import com.hazelcast.jet.config.ProcessingGuarantee;
+import com.hazelcast.jet.core.metrics.Metrics;
 import com.hazelcast.jet.pipeline.BatchSource;
+import com.hazelcast.jet.pipeline.JoinClause;
+import com.hazelcast.jet.pipeline.JournalInitialPosition;
 import com.hazelcast.jet.pipeline.Pipeline;
+import com.hazelcast.jet.pipeline.ServiceFactories;
+import com.hazelcast.jet.pipeline.Sink;
 import com.hazelcast.jet.pipeline.Sinks;
+import com.hazelcast.jet.pipeline.Sources;
 import com.hazelcast.jet.pipeline.StreamSource;
 import com.hazelcast.jet.pipeline.StreamStage;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.map.EventJournalMapEvent;
+import com.hazelcast.map.IMap;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reads a customer on its owning member and returns {@code projection} of it, {@code null} if it does not exist.
+ * Being {@link ReadOnly} it does not lock the entry nor run on the backups.
+ */
+class CustomerLookupProcessor<R>
+        implements EntryProcessor<String, Customer, R>, ReadOnly {
+    private final FunctionEx<Customer, R> projection;
+
+    CustomerLookupProcessor(FunctionEx<Customer, R> projection) {
+        this.projection = projection;
+    }
+
+    @Override
+    public R process(Map.Entry<String, Customer> entry) {
+        Customer customer = entry.getValue();
+        return customer == null ? null : projection.apply(customer);
+    }
+
+    @Override
+    public EntryProcessor<String, Customer, R> getBackupProcessor() {
+        return null;
+    }
+}
+
+/**
+ * Removal of a customer, as read from the event journal of the {@code customers} map.
+ */
+record CustomerRemoved(String id)
+        implements Serializable {
+}
+
+/**
+ * Per-customer state of the stream-stream join: the latest version of the customer and the orders received before
+ * the customer was. It is part of the job snapshots, hence {@link Serializable}.
+ * <p>
+ * At most {@link #MAX_PENDING_ORDERS} orders are held per customer, so orders of customer ids that never show up
+ * cannot grow the job memory and its snapshots without limit; the orders beyond it are dropped, like the orders of
+ * removed customers, and counted in the {@code droppedOrders} job metric.
+ */
+class CustomerJoinState
+        implements Serializable {
+    static final int MAX_PENDING_ORDERS = 100;
+
+    private Customer customer;
+    private boolean removed;
+    private List<Order> pending = new ArrayList<>();
+
+    Traverser<EnrichedOrder> accept(Object item) {
+        if (item instanceof Order order) {
+            if (customer != null) {
+                return Traversers.singleton(enrich(order));
+            }
+            if (removed || pending.size() == MAX_PENDING_ORDERS) {
+                Metrics.metric("droppedOrders").increment();
+            } else {
+                pending.add(order);
+            }
+            return Traversers.empty();
+        }
+        if (item instanceof CustomerRemoved) {
+            customer = null;
+            removed = true;
+            return Traversers.empty();
+        }
+        customer = (Customer) item;
+        removed = false;
+        if (pending.isEmpty()) {
+            return Traversers.empty();
+        }
+        List<EnrichedOrder> enriched = new ArrayList<>(pending.size());
+        for (Order order : pending) {
+            enriched.add(enrich(order));
+        }
+        pending = new ArrayList<>();
+        return Traversers.traverseIterable(enriched);
+    }
+
+    private EnrichedOrder enrich(Order order) {
+        return new EnrichedOrder(order.id(), customer.name(), order.product());
+    }
+}
 
 public class OrderEnrichmentPipeline {
+    public static final String ENRICHED_ORDERS = "enriched-orders";
+
     public static Pipeline build(BatchSource<Order> source) {
+        return build(source, Sinks.list(ENRICHED_ORDERS));
+    }
+
+    /**
+     * Enriches the orders of {@code source} and writes them to {@code sink}, e.g. {@link #mapSink(String)} to spread
+     * them over all the partitions of the cluster rather than a single {@code IList}.
+     */
+    public static Pipeline build(BatchSource<Order> source, Sink<? super EnrichedOrder> sink) {
         Pipeline p = Pipeline.create();
-        p.readFrom(source).mapUsingIMap("customers", Order::customerId, getEnrichment()).writeTo(Sinks.list("enriched-orders"));
+        p.readFrom(source).mapUsingIMap("customers", Order::customerId, getEnrichment()).writeTo(sink);
+        return p;
+    }
+
+    /**
+     * Sink writing the enriched orders to the {@code IMap} {@code mapName}, keyed by order id. Each processor
+     * buffers the entries and sends them to their owners in batches, so writes are spread over all the members.
+     * To stream the enriched orders downstream, enable the event journal of the map with
+     * {@link #configureEventJournal(Config, String, int)}.
+     */
+    public static Sink<EnrichedOrder> mapSink(String mapName) {
+        return Sinks.map(mapName, EnrichedOrder::orderId, FunctionEx.identity());
+    }
+
+    /**
+     * Enables the event journal of {@code mapName}, keeping up to {@code capacity} events per member.
+     */
+    public static Config configureEventJournal(Config config, String mapName, int capacity) {
+        config.getMapConfig(mapName).getEventJournalConfig().setEnabled(true).setCapacity(capacity);
+        return config;
+    }
+
+    /**
+     * Like {@link #build(BatchSource)}, but reads the whole {@code customers} map once and broadcasts it to every
+     * processor, so that each order is enriched by a local hash lookup. Orders of unknown customers are dropped.
+     * <p>
+     * Only the customers held in memory are joined: the map source does not go through the MapStore, so a
+     * MapStore-backed map must be fully loaded first, e.g. with {@code InitialLoadMode.EAGER} or
+     * {@link com.hazelcast.map.IMap#loadAll(boolean)}.
+     */
+    public static Pipeline buildWithHashJoin(BatchSource<Order> source) {
+        return buildWithHashJoin(source, Sinks.list(ENRICHED_ORDERS));
+    }
+
+    public static Pipeline buildWithHashJoin(BatchSource<Order> source, Sink<? super EnrichedOrder> sink) {
+        Pipeline p = Pipeline.create();
+        p.readFrom(source)
+         .innerHashJoin(p.readFrom(Sources.<String, Customer>map("customers")),
+                 JoinClause.joinMapEntries(Order::customerId), getEnrichment())
+         .writeTo(sink);
         return p;
     }
 
@@ -27,4 +187,138 @@ public class OrderEnrichmentPipeline {
         return p.readFrom(source).withoutTimestamps() // or with timestamps if using event time
                 .mapUsingIMap("customers", Order::customerId, getEnrichment());
     }
+
+    /**
+     * Like {@link #enrich(Pipeline, StreamSource)}, but the customers of up to {@code maxBatchSize} queued orders are
+     * fetched with a single {@code submitToKeys} call instead of one {@code get} per order.
+     * <p>
+     * Jet keeps a fixed number of batches in flight per processor: to have more concurrent lookups, raise the local
+     * parallelism of the returned stage.
+     */
+    public static StreamStage<EnrichedOrder> enrichBatched(Pipeline p, StreamSource<Order> source, int maxBatchSize) {
+        return p.readFrom(source).withoutTimestamps()
+                .mapUsingServiceAsyncBatched(ServiceFactories.<String, Customer>iMapService("customers"), maxBatchSize,
+                        (customers, orders) -> enrichAll(customers, orders, FunctionEx.identity(), getEnrichment()));
+    }
+
+    /**
+     * Enriches the orders placed and confirmed through {@link HzOrderService}, read from the event journal of the
+     * {@code orders} map (see {@link #configureEventJournal(Config, String, int)}).
+     */
+    public static StreamStage<EnrichedOrder> enrich(Pipeline p, JournalInitialPosition initialPosition) {
+        return enrich(p, ordersJournal(initialPosition));
+    }
+
+    /**
+     * Source of the new and newly confirmed orders, read from the event journal of the {@code orders} map. Each
+     * member reads the journal of the partitions it owns. An order confirmed after being placed is emitted twice,
+     * so downstream sinks should be keyed by order id, like {@link #mapSink(String)}.
+     */
+    public static StreamSource<Order> ordersJournal(JournalInitialPosition initialPosition) {
+        return Sources.mapJournal("orders", initialPosition, Util.mapEventNewValue(), placedOrConfirmed());
+    }
+
+    private static PredicateEx<EventJournalMapEvent<String, Order>> placedOrConfirmed() {
+        return event -> event.getType() == EntryEventType.ADDED
+                || event.getType() == EntryEventType.UPDATED && event.getNewValue().confirmed()
+                && (event.getOldValue() == null || !event.getOldValue().confirmed());
+    }
+
+    /**
+     * Starts a job enriching the orders of {@code source} into the {@code IMap} {@code sinkMapName}, keyed by order
+     * id (see {@link #mapSink(String)}).
+     * <p>
+     * With a guarantee other than {@link ProcessingGuarantee#NONE}, the job takes a snapshot every
+     * {@code snapshotIntervalMillis} and restarts from the last one after a member failure: {@code source} must be
+     * replayable, like {@link #ordersJournal(JournalInitialPosition)}. The orders replayed after a restart overwrite
+     * their own entries, so the sink is idempotent and {@link ProcessingGuarantee#AT_LEAST_ONCE} already leaves the map
+     * as an exactly-once run would, at a lower snapshot cost.
+     */
+    public static Job startEnrichment(JetService jet, StreamSource<Order> source, String sinkMapName,
+                                      ProcessingGuarantee guarantee, long snapshotIntervalMillis) {
+        Pipeline p = Pipeline.create();
+        enrich(p, source).writeTo(mapSink(sinkMapName));
+        return jet.newJob(p, new JobConfig().setProcessingGuarantee(guarantee).setSnapshotIntervalMillis(snapshotIntervalMillis));
+    }
+
+    /**
+     * Like {@link #enrichBatched(Pipeline, StreamSource, int)}, but the customer name is extracted on the member
+     * owning the customer: only the names travel over the network and get deserialized, however large the customer
+     * records are.
+     */
+    public static StreamStage<EnrichedOrder> enrichProjected(Pipeline p, StreamSource<Order> source, int maxBatchSize) {
+        return p.readFrom(source).withoutTimestamps()
+                .mapUsingServiceAsyncBatched(ServiceFactories.<String, Customer>iMapService("customers"), maxBatchSize,
+                        (customers, orders) -> enrichAll(customers, orders, Customer::name, getNameEnrichment()));
+    }
+
+    /**
+     * Joins the orders with the changes of the {@code customers} map, read from its event journal (see
+     * {@link #configureEventJournal(Config, String, int)}): each processor keeps the latest version of the customers
+     * of its share of the keys, so orders are enriched without any remote lookup and renamed customers are reflected
+     * as soon as their change is read. Orders received before their customer are held until the customer arrives,
+     * up to a limit (see {@link CustomerJoinState}); orders of removed customers are dropped, as by
+     * {@link #enrich(Pipeline, StreamSource)}.
+     * <p>
+     * Customers loaded through the MapStore are journaled as {@code LOADED} events and joined like added ones; evictions
+     * are ignored, since the customer still exists in the database. The journal is read from the oldest event, so it
+     * must be large enough to still hold every customer when the job starts. The join state is saved in the snapshots, so
+     * the job can run with a processing guarantee.
+     */
+    public static StreamStage<EnrichedOrder> enrichWithCustomerChanges(Pipeline p, StreamSource<Order> source) {
+        StreamStage<Object> customers = p.readFrom(Sources.<Object, String, Customer>mapJournal("customers",
+                        JournalInitialPosition.START_FROM_OLDEST, OrderEnrichmentPipeline::customerChange, customerChanges()))
+                .withoutTimestamps();
+        StreamStage<Object> orders = p.readFrom(source).withoutTimestamps().map(order -> (Object) order);
+        return customers.merge(orders)
+                .groupingKey(OrderEnrichmentPipeline::customerIdOf)
+                .flatMapStateful(CustomerJoinState::new, (state, customerId, item) -> state.accept(item));
+    }
+
+    private static PredicateEx<EventJournalMapEvent<String, Customer>> customerChanges() {
+        return event -> event.getType() == EntryEventType.ADDED || event.getType() == EntryEventType.LOADED
+                || event.getType() == EntryEventType.UPDATED || event.getType() == EntryEventType.REMOVED;
+    }
+
+    private static Object customerChange(EventJournalMapEvent<String, Customer> event) {
+        return event.getType() == EntryEventType.REMOVED ? new CustomerRemoved(event.getKey()) : event.getNewValue();
+    }
+
+    private static String customerIdOf(Object item) {
+        if (item instanceof Order order) {
+            return order.customerId();
+        }
+        if (item instanceof CustomerRemoved removed) {
+            return removed.id();
+        }
+        return ((Customer) item).id();
+    }
+
+    private static BiFunctionEx<Order, String, EnrichedOrder> getNameEnrichment() {
+        return (order, customerName) -> {
+            if (customerName == null) {
+                return null;
+            }
+            return new EnrichedOrder(order.id(), customerName, order.product());
+        };
+    }
+
+    private static <R> CompletableFuture<List<EnrichedOrder>> enrichAll(IMap<String, Customer> customers, List<Order> orders,
+                                                                        FunctionEx<Customer, R> projection,
+                                                                        BiFunctionEx<Order, R, EnrichedOrder> enrichment) {
+        Set<String> customerIds = new HashSet<>();
+        for (Order order : orders) {
+            customerIds.add(order.customerId());
+        }
+        return customers.submitToKeys(customerIds, new CustomerLookupProcessor<>(projection))
+                        .toCompletableFuture()
+                        .thenApply(found -> {
+                            // one result per order, in order: Jet drops the null ones
+                            List<EnrichedOrder> enriched = new ArrayList<>(orders.size());
+                            for (Order order : orders) {
+                                enriched.add(enrichment.apply(order, found.get(order.customerId())));
+                            }
+                            return enriched;
+                        });
+    }
 }
@@ -1,9 +1,48 @@
 package com.hazelcast.fcannizzohz;
 
+import java.util.Collection;
+import java.util.concurrent.CompletionStage;
+import java.util.function.UnaryOperator;
+
 public interface OrderService {
     void placeOrder(Order order);
 
+    /**
+     * Async variant of {@link #placeOrder(Order)}: the stage fails with {@link IllegalStateException} if the customer
+     * does not exist and with {@link ServiceException} if the cluster operations fail.
+     */
+    CompletionStage<Void> placeOrderAsync(Order order);
+
     Order getOrder(String id);
 
+    CompletionStage<Order> getOrderAsync(String id);
+
     void updateOrder(Order order);
+
+    Collection<Order> findOrdersByCustomer(String customerId);
+
+    Collection<Order> findOrders(boolean confirmed);
+
+    /**
+     * Applies {@code update} to the stored order in place.
+     *
+     * @return {@code false} if there is no order with the given id
+     */
+    boolean updateOrder(String id, OrderUpdate update);
+
+    /**
+     * Read-modify-write of the order without locking: the update is only stored if nobody changed the order since
+     * it was read, otherwise it is re-applied to the fresh value, up to {@code maxRetries} times.
+     *
+     * @return the stored order, or {@code null} if there is no order with the given id
+     * @throws ServiceException if the order kept being modified concurrently
+     */
+    Order updateOrderOptimistically(String id, UnaryOperator<Order> update, int maxRetries);
+
+    /**
+     * Marks the order as confirmed.
+     *
+     * @return {@code false} if there is no order with the given id
+     */
+    boolean confirmOrder(String id);
 }
@@ -0,0 +1,13 @@
+package com.hazelcast.fcannizzohz;
+
+import java.io.Serializable;
+import java.util.function.UnaryOperator;
+
+/**
+ * Update applied to an order where it is stored. Serializable so that lambdas and method references
+ * (e.g. {@code Order::confirm}) can be shipped to the owning member.
+ */
+@FunctionalInterface
+public interface OrderUpdate
+        extends UnaryOperator<Order>, Serializable {
+}
@@ -1,67 +1,45 @@
 package com.hazelcast.fcannizzohz;
 
-import com.hazelcast.map.MapStore;
-
+import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Collection;
-import java.util.Map;
+import java.util.List;
 
+/**
+ * MapStore of the {@code customers} map backed by the {@code customers (id, name)} table.
+ */
 public class SQLCustomerMapStore
-        implements MapStore<String, Customer> {
-    private final Connection connection;
-
-    public SQLCustomerMapStore(Connection connection) {
-        this.connection = connection;
-    }
+        extends AbstractSQLMapStore<Customer> {
+    private static final List<String> COLUMNS = List.of("id", "name");
 
-    @Override
-    public Customer load(String key) {
-        try (var stmt = connection.prepareStatement("SELECT id, name FROM customers WHERE id = ?")) {
-            stmt.setString(1, key);
-            var rs = stmt.executeQuery();
-            if (rs.next()) {
-                return new Customer(rs.getString("id"), rs.getString("name"));
-            }
-            return null;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    @Override
-    public Map<String, Customer> loadAll(Collection<String> collection) {
-        return Map.of();
+    public SQLCustomerMapStore() {
+        super("customers", COLUMNS);
     }
 
-    @Override
-    public Iterable<String> loadAllKeys() {
-        return null;
+    public SQLCustomerMapStore(Connection connection) {
+        this(connection, DEFAULT_BATCH_SIZE);
     }
 
-    @Override
-    public void store(String key, Customer customer) {
-        try (var stmt = connection.prepareStatement("MERGE INTO customers KEY(id) VALUES (?, ?)")) {
-            stmt.setString(1, customer.id());
-            stmt.setString(2, customer.name());
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+    public SQLCustomerMapStore(Connection connection, int batchSize) {
+        super("customers", COLUMNS, connection, batchSize);
     }
 
-    @Override
-    public void storeAll(Map<String, Customer> map) {
-
+    public SQLCustomerMapStore(DataSource dataSource, int poolSize, int batchSize) {
+        super("customers", COLUMNS, dataSource, poolSize, batchSize);
     }
 
     @Override
-    public void delete(String s) {
-
+    protected Customer read(ResultSet rs)
+            throws SQLException {
+        return new Customer(rs.getString("id"), rs.getString("name"));
     }
 
     @Override
-    public void deleteAll(Collection<String> collection) {
-
+    protected void bind(PreparedStatement stmt, Customer customer)
+            throws SQLException {
+        stmt.setString(1, customer.id());
+        stmt.setString(2, customer.name());
     }
 }
@@ -0,0 +1,50 @@
+package com.hazelcast.fcannizzohz;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * MapStore of the {@code orders} map backed by the
+ * {@code orders (id, customer_id, product, confirmed, version)} table.
+ */
+public class SQLOrderMapStore
+        extends AbstractSQLMapStore<Order> {
+    private static final List<String> COLUMNS = List.of("id", "customer_id", "product", "confirmed", "version");
+
+    public SQLOrderMapStore() {
+        super("orders", COLUMNS);
+    }
+
+    public SQLOrderMapStore(Connection connection) {
+        this(connection, DEFAULT_BATCH_SIZE);
+    }
+
+    public SQLOrderMapStore(Connection connection, int batchSize) {
+        super("orders", COLUMNS, connection, batchSize);
+    }
+
+    public SQLOrderMapStore(DataSource dataSource, int poolSize, int batchSize) {
+        super("orders", COLUMNS, dataSource, poolSize, batchSize);
+    }
+
+    @Override
+    protected Order read(ResultSet rs)
+            throws SQLException {
+        return new Order(rs.getString("id"), rs.getString("customer_id"), rs.getString("product"),
+                rs.getBoolean("confirmed"), rs.getLong("version"));
+    }
+
+    @Override
+    protected void bind(PreparedStatement stmt, Order order)
+            throws SQLException {
+        stmt.setString(1, order.id());
+        stmt.setString(2, order.customerId());
+        stmt.setString(3, order.product());
+        stmt.setBoolean(4, order.confirmed());
+        stmt.setLong(5, order.version());
+    }
+}
@@ -1,5 +1,8 @@
 package com.hazelcast.fcannizzohz;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
 /**
  * Service's own exception, raised to wrap lower level exception
  */
@@ -12,4 +15,18 @@ public class ServiceException
     public ServiceException(String message, Throwable cause) {
         super(message, cause);
     }
+
+    /**
+     * Async counterpart of the services' {@code try/catch} blocks: a failed stage is completed with a
+     * {@code ServiceException} carrying the given message and the original failure as cause.
+     */
+    static <T> CompletionStage<T> wrapFailures(CompletionStage<T> stage, String message) {
+        return stage.handle((value, t) -> {
+            if (t == null) {
+                return value;
+            }
+            Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+            throw new CompletionException(new ServiceException(message, cause));
+        });
+    }
 }
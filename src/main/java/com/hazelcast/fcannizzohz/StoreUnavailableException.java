@@ -0,0 +1,11 @@
+package com.hazelcast.fcannizzohz;
+
+/**
+ * Raised without reaching the database when the store's circuit breaker is open.
+ */
+public class StoreUnavailableException
+        extends RuntimeException {
+    public StoreUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,116 @@
+package com.hazelcast.fcannizzohz.junit5;
+
+import com.hazelcast.client.test.TestHazelcastFactory;
+import com.hazelcast.config.Config;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.fcannizzohz.CompactSerializers;
+import com.hazelcast.fcannizzohz.Customer;
+import com.hazelcast.fcannizzohz.EnrichedOrder;
+import com.hazelcast.fcannizzohz.Order;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.hazelcast.test.Accessors.getSerializationService;
+import static com.hazelcast.test.HazelcastTestSupport.randomName;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompactSerializersTest {
+
+    private static final List<Object> SAMPLES = List.of(new Customer("c1", "Alice"), new Order("o1", "c1", "Laptop"),
+            new EnrichedOrder("o1", "Alice", "Laptop"));
+
+    private TestHazelcastFactory factory;
+    private InternalSerializationService javaSerialization;
+    private InternalSerializationService compactSerialization;
+
+    @BeforeEach
+    void setup() {
+        factory = new TestHazelcastFactory();
+        HazelcastInstance javaMember = factory.newHazelcastInstance(new Config().setClusterName(randomName()));
+        Config compactConfig = new Config().setClusterName(randomName());
+        CompactSerializers.register(compactConfig.getSerializationConfig());
+        HazelcastInstance compactMember = factory.newHazelcastInstance(compactConfig);
+        javaSerialization = getSerializationService(javaMember);
+        compactSerialization = getSerializationService(compactMember);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (factory != null) {
+            factory.shutdownAll();
+        }
+    }
+
+    @Test
+    public void compactIsSmallerThanJavaSerialization() {
+        for (Object sample : SAMPLES) {
+            int javaBytes = javaSerialization.toData(sample).totalSize();
+            int compactBytes = compactSerialization.toData(sample).totalSize();
+            assertTrue(compactBytes < javaBytes,
+                    sample.getClass().getSimpleName() + ": compact " + compactBytes + " bytes, java " + javaBytes + " bytes");
+        }
+    }
+
+    @Test
+    public void compactRoundTrip() {
+        for (Object sample : SAMPLES) {
+            Data data = compactSerialization.toData(sample);
+            assertEquals(sample, compactSerialization.toObject(data));
+        }
+    }
+
+    @Test
+    public void javaSerializedDataIsStillReadable() {
+        // Data written before the serializers were registered keeps being readable
+        for (Object sample : SAMPLES) {
+            Data legacy = javaSerialization.toData(sample);
+            assertEquals(sample, compactSerialization.toObject(legacy));
+        }
+    }
+
+    @Test
+    public void measureSerialization() {
+        int iterations = 100_000;
+        // warm-up, not reported
+        for (Object sample : SAMPLES) {
+            measureRoundTrips(javaSerialization, sample, iterations);
+            measureRoundTrips(compactSerialization, sample, iterations);
+        }
+        for (Object sample : SAMPLES) {
+            long[] java = measureRoundTrips(javaSerialization, sample, iterations);
+            long[] compact = measureRoundTrips(compactSerialization, sample, iterations);
+            System.out.printf("%-13s toData java %6.0f ns, compact %6.0f ns; toObject java %6.0f ns, compact %6.0f ns%n",
+                    sample.getClass().getSimpleName(), (double) java[0] / iterations, (double) compact[0] / iterations,
+                    (double) java[1] / iterations, (double) compact[1] / iterations);
+        }
+    }
+
+    /**
+     * Serializes {@code sample} then deserializes it, {@code iterations} times each.
+     *
+     * @return the time taken by the {@code toData} calls, then by the {@code toObject} calls
+     */
+    private static long[] measureRoundTrips(InternalSerializationService serialization, Object sample, int iterations) {
+        Data data = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            data = serialization.toData(sample);
+        }
+        long toDataNanos = System.nanoTime() - start;
+
+        Object object = null;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            object = serialization.toObject(data);
+        }
+        long toObjectNanos = System.nanoTime() - start;
+        assertEquals(sample, object);
+        return new long[]{toDataNanos, toObjectNanos};
+    }
+}
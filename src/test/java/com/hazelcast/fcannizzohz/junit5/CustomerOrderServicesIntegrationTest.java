@@ -1,6 +1,7 @@
 package com.hazelcast.fcannizzohz.junit5;
 
 import com.hazelcast.client.test.TestHazelcastFactory;
+import com.hazelcast.config.Config;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.fcannizzohz.Customer;
 import com.hazelcast.fcannizzohz.CustomerService;
@@ -8,11 +9,30 @@ import com.hazelcast.fcannizzohz.HzCustomerService;
 import com.hazelcast.fcannizzohz.HzOrderService;
 import com.hazelcast.fcannizzohz.Order;
 import com.hazelcast.fcannizzohz.OrderService;
+import com.hazelcast.fcannizzohz.ServiceException;
+import com.hazelcast.map.IMap;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hazelcast.test.HazelcastTestSupport.randomName;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class CustomerOrderServicesIntegrationTest {
 
@@ -51,4 +71,204 @@ public class CustomerOrderServicesIntegrationTest {
         assertEquals("Alice", customerService.findCustomer("c1").name());
         assertEquals("Laptop", orderService.getOrder("o1").product());
     }
+
+    @Test
+    public void confirmOrderInPlace() {
+        HazelcastInstance[] cluster = factory.newInstances(new Config().setClusterName(randomName()), 2);
+        new HzCustomerService(cluster[0]).save(new Customer("c1", "Alice"));
+        OrderService orderService = new HzOrderService(cluster[1]);
+        orderService.placeOrder(new Order("o1", "c1", "Laptop"));
+
+        assertTrue(orderService.confirmOrder("o1"));
+        assertTrue(orderService.getOrder("o1").confirmed());
+
+        assertTrue(orderService.updateOrder("o1", o -> new Order(o.id(), o.customerId(), "Tablet", o.confirmed())));
+        assertEquals("Tablet", orderService.getOrder("o1").product());
+        assertTrue(orderService.getOrder("o1").confirmed());
+
+        assertFalse(orderService.confirmOrder("unknown"));
+    }
+
+    @Test
+    public void findOrdersUsesIndexes() {
+        Config config = HzOrderService.configureIndexes(new Config().setClusterName(randomName()));
+        HazelcastInstance[] cluster = factory.newInstances(config, 2);
+        CustomerService customerService = new HzCustomerService(cluster[0]);
+        customerService.save(new Customer("c1", "Alice"));
+        customerService.save(new Customer("c2", "Bob"));
+
+        OrderService orderService = new HzOrderService(cluster[1]);
+        orderService.placeOrder(new Order("o1", "c1", "Laptop"));
+        orderService.placeOrder(new Order("o2", "c1", "Phone"));
+        orderService.placeOrder(new Order("o3", "c2", "Tablet"));
+        orderService.confirmOrder("o2");
+
+        Collection<Order> aliceOrders = orderService.findOrdersByCustomer("c1");
+        assertEquals(2, aliceOrders.size());
+        assertTrue(aliceOrders.stream().allMatch(o -> o.customerId().equals("c1")));
+
+        Collection<Order> confirmed = orderService.findOrders(true);
+        assertEquals(1, confirmed.size());
+        assertEquals("o2", confirmed.iterator().next().id());
+        assertEquals(2, orderService.findOrders(false).size());
+
+        long indexedQueries = cluster[0].getMap("orders").getLocalMapStats().getIndexedQueryCount()
+                + cluster[1].getMap("orders").getLocalMapStats().getIndexedQueryCount();
+        assertTrue(indexedQueries > 0);
+    }
+
+    @Test
+    public void measureFindOrdersByCustomer() {
+        int[] sizes = {1_000, 10_000, 100_000};
+        int queries = 100;
+        for (boolean indexed : new boolean[]{true, false}) {
+            Config config = new Config().setClusterName(randomName());
+            if (indexed) {
+                HzOrderService.configureIndexes(config);
+            }
+            HazelcastInstance[] cluster = factory.newInstances(config, 2);
+            IMap<String, Order> orders = cluster[0].getMap("orders");
+            new HzCustomerService(cluster[0]).save(new Customer("probe", "Alice"));
+            OrderService orderService = new HzOrderService(cluster[1]);
+            // the probed customer keeps 10 orders whatever the map size, so only the cost of finding them grows
+            for (int i = 0; i < 10; i++) {
+                orderService.placeOrder(new Order("probe-o" + i, "probe", "Product" + i));
+            }
+
+            int size = 0;
+            for (int target : sizes) {
+                Map<String, Order> batch = new HashMap<>();
+                for (; size < target; size++) {
+                    batch.put("o" + size, new Order("o" + size, "c" + size % 1_000, "Product" + size));
+                }
+                orders.putAll(batch);
+
+                // warm-up, not reported
+                for (int i = 0; i < queries; i++) {
+                    orderService.findOrdersByCustomer("probe");
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < queries; i++) {
+                    assertEquals(10, orderService.findOrdersByCustomer("probe").size());
+                }
+                long elapsedNanos = System.nanoTime() - start;
+                System.out.printf("%-9s %6d orders: findOrdersByCustomer avg %8.3f ms%n",
+                        indexed ? "indexed" : "unindexed", size, elapsedNanos / 1e6 / queries);
+            }
+        }
+    }
+
+    @Test
+    public void optimisticUpdatesAreNotLost()
+            throws Exception {
+        HazelcastInstance[] cluster = factory.newInstances(new Config().setClusterName(randomName()), 2);
+        new HzCustomerService(cluster[0]).save(new Customer("c1", "Alice"));
+        OrderService orderService = new HzOrderService(cluster[0]);
+        orderService.placeOrder(new Order("o1", "c1", "Laptop"));
+        orderService.placeOrder(new Order("o2", "c1", "Phone"));
+
+        // Many writers hammering the same two keys from both members
+        int threads = 8;
+        int updatesPerThread = 50;
+        // the update function runs once per attempt, a lost compare-and-set costs one more
+        AtomicLong attempts = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                OrderService service = new HzOrderService(cluster[t % 2]);
+                String id = t % 3 == 0 ? "o2" : "o1";
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < updatesPerThread; i++) {
+                        service.updateOrderOptimistically(id, o -> {
+                            attempts.incrementAndGet();
+                            return o;
+                        }, 1000);
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        // Every update bumped the version exactly once
+        long updates = (long) threads * updatesPerThread;
+        long total = orderService.getOrder("o1").version() + orderService.getOrder("o2").version();
+        assertEquals(updates, total);
+        System.out.printf("%d updates from %d threads in %5d ms: %d attempts, %d retries (%.2f per update)%n", updates,
+                threads, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), attempts.get(), attempts.get() - updates,
+                (double) (attempts.get() - updates) / updates);
+    }
+
+    @Test
+    public void optimisticUpdateReportsConflict() {
+        HazelcastInstance instance = factory.newHazelcastInstance();
+        new HzCustomerService(instance).save(new Customer("c1", "Alice"));
+        OrderService orderService = new HzOrderService(instance);
+        orderService.placeOrder(new Order("o1", "c1", "Laptop"));
+
+        // Every attempt is overtaken by a concurrent writer
+        ServiceException ex = assertThrows(ServiceException.class, () -> orderService.updateOrderOptimistically("o1", o -> {
+            orderService.confirmOrder("o1");
+            return o;
+        }, 3));
+
+        assertEquals("Update order failed: concurrent modification of o1", ex.getMessage());
+    }
+
+    @Test
+    public void colocatedPlaceOrder() {
+        Config config = HzOrderService.configureColocation(new Config().setClusterName(randomName()));
+        HazelcastInstance[] cluster = factory.newInstances(config, 2);
+
+        CustomerService customerService = new HzCustomerService(cluster[0]);
+        OrderService orderService = new HzOrderService(cluster[1], null, true);
+
+        customerService.save(new Customer("c1", "Alice"));
+
+        String orderId = HzOrderService.colocatedId("o1", "c1");
+        orderService.placeOrder(new Order(orderId, "c1", "Laptop"));
+        assertEquals("Laptop", orderService.getOrder(orderId).product());
+
+        // Validation still happens, now on the member owning the customer
+        assertThrows(IllegalStateException.class,
+                () -> orderService.placeOrder(new Order(HzOrderService.colocatedId("o2", "c2"), "c2", "Phone")));
+        // Ids that are not co-located with their customer are rejected
+        assertThrows(IllegalArgumentException.class, () -> orderService.placeOrder(new Order("o3", "c1", "Phone")));
+        // The partition key is the text after the first '@': this id is co-located with "b@c1", not "c1"
+        assertThrows(IllegalArgumentException.class, () -> orderService.placeOrder(new Order("a@b@c1", "c1", "Phone")));
+        assertThrows(IllegalArgumentException.class, () -> HzOrderService.colocatedId("a@b", "c1"));
+    }
+
+    @Test
+    public void customerAndOrderServicesAsyncIntegration() {
+        HazelcastInstance instance = factory.newHazelcastInstance();
+        CustomerService customerService = new HzCustomerService(instance);
+        OrderService orderService = new HzOrderService(instance);
+
+        // Chain the calls without blocking in between
+        Order order = customerService.saveAsync(new Customer("c1", "Alice"))
+                                     .thenCompose(v -> orderService.placeOrderAsync(new Order("o1", "c1", "Laptop")))
+                                     .thenCompose(v -> orderService.getOrderAsync("o1"))
+                                     .toCompletableFuture().join();
+
+        assertEquals("Laptop", order.product());
+        assertEquals("Alice", customerService.findCustomerAsync("c1").toCompletableFuture().join().name());
+    }
+
+    @Test
+    public void placeOrderAsyncFailsForUnknownCustomer() {
+        HazelcastInstance instance = factory.newHazelcastInstance();
+        OrderService orderService = new HzOrderService(instance);
+
+        CompletionException ex = assertThrows(CompletionException.class,
+                () -> orderService.placeOrderAsync(new Order("o1", "unknown", "Laptop")).toCompletableFuture().join());
+
+        assertInstanceOf(IllegalStateException.class, ex.getCause());
+    }
 }
\ No newline at end of file
@@ -2,26 +2,72 @@ package com.hazelcast.fcannizzohz.junit5;
 
 import com.hazelcast.client.test.TestHazelcastFactory;
 import com.hazelcast.config.Config;
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.MapStoreConfig;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.fcannizzohz.CircuitBreakingMapStore;
 import com.hazelcast.fcannizzohz.Customer;
+import com.hazelcast.fcannizzohz.CustomerChangePoller;
 import com.hazelcast.fcannizzohz.CustomerService;
 import com.hazelcast.fcannizzohz.HzCustomerService;
+import com.hazelcast.fcannizzohz.HzOrderService;
+import com.hazelcast.fcannizzohz.NegativeCachingMapStore;
+import com.hazelcast.fcannizzohz.Order;
 import com.hazelcast.fcannizzohz.SQLCustomerMapStore;
 import com.hazelcast.fcannizzohz.ServiceException;
+import com.hazelcast.fcannizzohz.StoreUnavailableException;
+import com.hazelcast.map.IMap;
 import com.hazelcast.map.MapStore;
+import com.hazelcast.nearcache.NearCacheStats;
 import com.hazelcast.sql.HazelcastSqlException;
+import org.h2.jdbcx.JdbcDataSource;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.hazelcast.test.HazelcastTestSupport.assertTrueEventually;
 import static com.hazelcast.test.HazelcastTestSupport.randomName;
+import static com.hazelcast.test.HazelcastTestSupport.waitAllForSafeState;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -36,8 +82,9 @@ import static org.mockito.Mockito.when;
  */
 public class CustomerServiceComponentTest {
 
-    private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS customers (id VARCHAR PRIMARY KEY, name VARCHAR)";
+    private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS customers (id VARCHAR PRIMARY KEY, name VARCHAR, version BIGINT DEFAULT 0)";
     private static final String DROP_TABLE_SQL = "DROP TABLE IF EXISTS customers";
+    private static final String JDBC_URL = "jdbc:h2:mem:test;DB_CLOSE_DELAY=-1";
     private TestHazelcastFactory factory;
     private Connection conn;
 
@@ -45,7 +92,7 @@ public class CustomerServiceComponentTest {
     void setup()
             throws SQLException {
         factory = new TestHazelcastFactory();
-        conn = DriverManager.getConnection("jdbc:h2:mem:test;DB_CLOSE_DELAY=-1");
+        conn = DriverManager.getConnection(JDBC_URL);
         conn.createStatement().execute(CREATE_TABLE_SQL);
     }
 
@@ -90,6 +137,452 @@ public class CustomerServiceComponentTest {
         assertEquals("Alice", fromStore.name());
     }
 
+    @Test
+    public void findCustomersLoadsMissingEntriesInBatches()
+            throws SQLException {
+        insertCustomers(250);
+
+        Config config = new Config();
+        config.setClusterName(randomName());
+        config.getMapConfig("customers").getMapStoreConfig().setEnabled(true)
+              .setImplementation(new SQLCustomerMapStore(conn, 100));
+
+        HazelcastInstance hz = factory.newHazelcastInstance(config);
+        CustomerService service = new HzCustomerService(hz);
+
+        // Keys missing from the IMap are fetched through SQLCustomerMapStore.loadAll
+        hz.getMap("customers").evictAll();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            ids.add("c" + i);
+        }
+        ids.add("unknown");
+        Map<String, Customer> found = service.findCustomers(ids);
+
+        assertEquals(250, found.size());
+        assertEquals("Name42", found.get("c42").name());
+    }
+
+    @Test
+    public void eagerInitialLoadWarmsTheMap()
+            throws SQLException {
+        insertCustomers(500);
+
+        Config config = new Config();
+        config.setClusterName(randomName());
+        config.getMapConfig("customers").getMapStoreConfig().setEnabled(true)
+              .setInitialLoadMode(MapStoreConfig.InitialLoadMode.EAGER)
+              .setImplementation(new SQLCustomerMapStore(conn, 50));
+
+        HazelcastInstance[] cluster = factory.newInstances(config, 2);
+
+        // With EAGER load getMap returns once every partition has loaded its keys
+        assertEquals(500, cluster[0].getMap("customers").size());
+        assertEquals("Name499", new HzCustomerService(cluster[1]).findCustomer("c499").name());
+    }
+
+    @Test
+    public void measureEagerInitialLoad()
+            throws SQLException {
+        // scaled down from a production table of a million rows
+        int rows = 100_000;
+        insertCustomers(rows);
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL(JDBC_URL);
+
+        // warm-up, not reported
+        measureWarming(h2, SQLCustomerMapStore.DEFAULT_BATCH_SIZE, rows);
+        for (int batchSize : new int[]{SQLCustomerMapStore.DEFAULT_BATCH_SIZE, 1_000}) {
+            long elapsedNanos = measureWarming(h2, batchSize, rows);
+            System.out.printf("batch size %4d: %d customers loaded in %5d ms, %8.0f customers/s%n", batchSize, rows,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), rows * 1e9 / elapsedNanos);
+        }
+    }
+
+    /**
+     * Starts a two-member cluster that eagerly loads the customers table in batches of {@code batchSize}.
+     *
+     * @return the time taken from the start of the members until the map holds every row
+     */
+    private long measureWarming(DataSource dataSource, int batchSize, int rows) {
+        Config config = new Config();
+        config.setClusterName(randomName());
+        config.getMapConfig("customers").getMapStoreConfig().setEnabled(true)
+              .setInitialLoadMode(MapStoreConfig.InitialLoadMode.EAGER)
+              .setImplementation(new SQLCustomerMapStore(dataSource, SQLCustomerMapStore.DEFAULT_POOL_SIZE, batchSize));
+
+        long start = System.nanoTime();
+        HazelcastInstance[] cluster = factory.newInstances(config, 2);
+        IMap<String, Customer> customers = cluster[0].getMap("customers");
+        long elapsedNanos = System.nanoTime() - start;
+        assertEquals(rows, customers.size());
+        for (HazelcastInstance member : cluster) {
+            member.shutdown();
+        }
+        return elapsedNanos;
+    }
+
+    @Test
+    public void writeBehindFlushesInBatches() {
+        SQLCustomerMapStore store = spy(new SQLCustomerMapStore(conn, 10));
+        Config config = new Config();
+        config.setClusterName(randomName());
+        config.getMapConfig("customers").getMapStoreConfig().setEnabled(true)
+              .setWriteDelaySeconds(1) // async write to MapStore after 1s
+              .setImplementation(store);
+
+        HazelcastInstance hz = factory.newHazelcastInstance(config);
+        CustomerService service = new HzCustomerService(hz);
+
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            customers.add(new Customer("c" + i, "Name" + i));
+        }
+        service.saveAll(customers);
+        // a burst of updates of the same customer is coalesced into a single write
+        for (int i = 0; i < 5; i++) {
+            service.save(new Customer("c0", "Renamed" + i));
+        }
+        for (int i = 20; i < 25; i++) {
+            hz.getMap("customers").delete("c" + i);
+        }
+
+        assertTrueEventually(() -> {
+            assertEquals(20, countRows("SELECT COUNT(*) FROM customers"));
+            assertEquals(1, countRows("SELECT COUNT(*) FROM customers WHERE id = 'c0' AND name = 'Renamed4'"));
+        });
+        // the queued writes reached the database as batches, not one call per entry
+        verify(store, atLeastOnce()).storeAll(argThat(batch -> batch.size() > 1));
+        verify(store, atLeastOnce()).deleteAll(argThat(batch -> batch.size() > 1));
+    }
+
+    @Test
+    public void failedBatchRollsBackTheWholeTransaction()
+            throws SQLException {
+        // one row per JDBC batch: the first batch is executed before the second one fails
+        SQLCustomerMapStore store = new SQLCustomerMapStore(conn, 1);
+        Map<String, Customer> batch = new LinkedHashMap<>();
+        batch.put("c1", new Customer("c1", "Alice"));
+        batch.put("c2", new Customer(null, "Broken")); // violates the primary key
+
+        assertThrows(RuntimeException.class, () -> store.storeAll(batch));
+        assertEquals(0, countRows("SELECT COUNT(*) FROM customers"));
+
+        // the connection is usable again, in auto-commit mode
+        store.store("c1", new Customer("c1", "Alice"));
+        assertEquals(1, countRows("SELECT COUNT(*) FROM customers"));
+    }
+
+    @Test
+    public void mapStoreConfiguredFromProperties() {
+        Config config = new Config();
+        config.setClusterName(randomName());
+        // Hazelcast instantiates the store and hands it the properties through MapLoaderLifecycleSupport.init
+        config.getMapConfig("customers").getMapStoreConfig().setEnabled(true)
+              .setClassName(SQLCustomerMapStore.class.getName()).setProperty("jdbc.url", JDBC_URL)
+              .setProperty("pool.size", "4");
+
+        HazelcastInstance hz = factory.newHazelcastInstance(config);
+        CustomerService service = new HzCustomerService(hz);
+
+        service.save(new Customer("c1", "Alice"));
+        hz.getMap("customers").evictAll();
+
+        assertEquals("Alice", service.findCustomer("c1").name());
+    }
+
+    @Test
+    public void pooledStoreServesConcurrentLoads()
+            throws Exception {
+        insertCustomers(100);
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL(JDBC_URL);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        DataSource dataSource = countingQueries(h2, inFlight, maxInFlight);
+        SQLCustomerMapStore store = new SQLCustomerMapStore(dataSource, 4, SQLCustomerMapStore.DEFAULT_BATCH_SIZE);
+
+        // Many partition-like threads loading at once, each load gets a connection of its own
+        try {
+            loadConcurrently(store, 16, 100);
+        } finally {
+            store.destroy();
+        }
+        // Queries overlapped on several connections, never more than the pool size
+        assertTrue(maxInFlight.get() > 1, "Queries never ran concurrently");
+        assertTrue(maxInFlight.get() <= 4, "More queries in flight than pooled connections: " + maxInFlight.get());
+    }
+
+    @Test
+    public void measurePoolSize()
+            throws Exception {
+        insertCustomers(100);
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL(JDBC_URL);
+        // each query is held for 1ms, standing in for a database round trip
+        DataSource dataSource = countingQueries(h2, new AtomicInteger(), new AtomicInteger());
+
+        int threads = 16;
+        int loadsPerThread = 100;
+        // warm-up, not reported
+        measureLoads(dataSource, 4, threads, loadsPerThread);
+        for (int poolSize : new int[]{1, 4}) {
+            long elapsedNanos = measureLoads(dataSource, poolSize, threads, loadsPerThread);
+            int loads = threads * loadsPerThread;
+            System.out.printf("pool size %d: %d loads from %d threads in %5d ms, %8.0f loads/s%n", poolSize, loads,
+                    threads, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), loads * 1e9 / elapsedNanos);
+        }
+    }
+
+    private static long measureLoads(DataSource dataSource, int poolSize, int threads, int loadsPerThread)
+            throws Exception {
+        SQLCustomerMapStore store = new SQLCustomerMapStore(dataSource, poolSize, SQLCustomerMapStore.DEFAULT_BATCH_SIZE);
+        try {
+            return loadConcurrently(store, threads, loadsPerThread);
+        } finally {
+            store.destroy();
+        }
+    }
+
+    @Test
+    public void pooledStoreReplacesBrokenConnections()
+            throws Exception {
+        insertCustomers(1);
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL(JDBC_URL);
+        List<Connection> opened = new CopyOnWriteArrayList<>();
+        DataSource dataSource = proxy(DataSource.class, h2, (ds, method, args) -> {
+            Object result = method.invoke(ds, args);
+            if (result instanceof Connection connection) {
+                opened.add(connection);
+            }
+            return result;
+        });
+        SQLCustomerMapStore store = new SQLCustomerMapStore(dataSource, 1, SQLCustomerMapStore.DEFAULT_BATCH_SIZE);
+        try {
+            assertEquals("Name0", store.load("c0").name());
+            opened.get(0).close();  // dropped by the database
+            assertThrows(RuntimeException.class, () -> store.load("c0"));
+
+            // the broken connection was not handed out again
+            assertEquals("Name0", store.load("c0").name());
+            assertEquals(2, opened.size());
+        } finally {
+            store.destroy();
+        }
+    }
+
+    /**
+     * Loads customers {@code c0} to {@code c<loadsPerThread - 1>} from {@code threads} threads at once.
+     *
+     * @return the time taken by all the loads
+     */
+    private static long loadConcurrently(SQLCustomerMapStore store, int threads, int loadsPerThread)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < loadsPerThread; i++) {
+                        assertEquals("Name" + i, store.load("c" + i).name());
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            return System.nanoTime() - start;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Wraps {@code dataSource} to track how many queries run at once. Each query is held for 1ms, so that queries
+     * on different connections overlap.
+     */
+    private static DataSource countingQueries(DataSource dataSource, AtomicInteger inFlight, AtomicInteger maxInFlight) {
+        return proxy(DataSource.class, dataSource, (ds, method, args) -> {
+            Object result = method.invoke(ds, args);
+            if (!(result instanceof Connection connection)) {
+                return result;
+            }
+            return proxy(Connection.class, connection, (c, connectionMethod, connectionArgs) -> {
+                Object statement = connectionMethod.invoke(c, connectionArgs);
+                if (!(statement instanceof PreparedStatement prepared)) {
+                    return statement;
+                }
+                return proxy(PreparedStatement.class, prepared, (ps, statementMethod, statementArgs) -> {
+                    if (!statementMethod.getName().equals("executeQuery")) {
+                        return statementMethod.invoke(ps, statementArgs);
+                    }
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(1);
+                        return statementMethod.invoke(ps, statementArgs);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            });
+        });
+    }
+
+    private interface Delegating<T> {
+        Object invoke(T target, Method method, Object[] args)
+                throws Throwable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Delegating<T> handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (p, method, args) -> {
+            try {
+                return handler.invoke(target, method, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    @Test
+    public void changePollerAppliesExternalChanges()
+            throws SQLException {
+        SQLCustomerMapStore sqlStore = spy(new SQLCustomerMapStore(conn));
+        Config config = new Config();
+        config.setClusterName(randomName());
+        config.getMapConfig("customers").getMapStoreConfig().setEnabled(true).setImplementation(sqlStore);
+
+        HazelcastInstance hz = factory.newHazelcastInstance(config);
+        CustomerService service = new HzCustomerService(hz);
+
+        conn.createStatement().execute("INSERT INTO customers (id, name, version) VALUES ('c1', 'Alice', 1)");
+        assertEquals("Alice", service.findCustomer("c1").name()); // loaded in the IMap
+
+        try (CustomerChangePoller poller = new CustomerChangePoller(hz, conn, Duration.ofMillis(50), 1)) {
+            // Another system renames the customer, bumping the version: no eviction needed to see it
+            conn.createStatement().execute("UPDATE customers SET name = 'Alicia', version = 2 WHERE id = 'c1'");
+            conn.createStatement().execute("INSERT INTO customers (id, name, version) VALUES ('c2', 'Bob', 3)");
+
+            assertTrueEventually(() -> {
+                assertEquals("Alicia", service.findCustomer("c1").name());
+                assertEquals(3, poller.appliedVersion());
+                assertEquals(0, poller.lag());
+            });
+            assertEquals("Bob", service.findCustomer("c2").name());
+        }
+
+        // Applied changes are not written back to the database
+        verify(sqlStore, never()).store(anyString(), any());
+        verify(sqlStore, never()).storeAll(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void changePollerRetriesBatchesThatFailedHalfway()
+            throws SQLException {
+        IMap<String, Customer> customers = (IMap<String, Customer>) mock(IMap.class);
+        doThrow(new IllegalStateException("Injected failure")).doNothing()
+                .when(customers).putTransient(eq("c2"), any(), anyLong(), any());
+        HazelcastInstance hz = mock(HazelcastInstance.class);
+        when(hz.<String, Customer>getMap("customers")).thenReturn(customers);
+
+        conn.createStatement().execute("INSERT INTO customers (id, name, version) VALUES ('c1', 'Alice', 1)");
+        conn.createStatement().execute("INSERT INTO customers (id, name, version) VALUES ('c2', 'Bob', 2)");
+        conn.createStatement().execute("INSERT INTO customers (id, name, version) VALUES ('c3', 'Carol', 3)");
+
+        try (CustomerChangePoller poller = new CustomerChangePoller(hz, conn, Duration.ofMillis(50), 10)) {
+            assertTrueEventually(() -> {
+                assertEquals(1, poller.failedPolls());
+                assertEquals(3, poller.appliedVersion());
+                assertEquals(0, poller.lag());
+            });
+        }
+        // The batch that failed on c2 was read and applied again as a whole
+        verify(customers, times(2)).putTransient(eq("c2"), any(), anyLong(), any());
+        verify(customers).putTransient(eq("c3"), any(), anyLong(), any());
+    }
+
+    @Test
+    public void loadAllSpansSeveralChunks()
+            throws SQLException {
+        insertCustomers(25);
+
+        // 25 keys with chunks of 10: two full chunks and a partial one
+        Map<String, Customer> loaded = new SQLCustomerMapStore(conn, 10).loadAll(
+                List.of("c0", "c1", "c2", "c3", "c4", "c5", "c6", "c7", "c8", "c9", "c10", "c11", "c12", "c13", "c14",
+                        "c15", "c16", "c17", "c18", "c19", "c20", "c21", "c22", "c23", "c24", "missing"));
+
+        assertEquals(25, loaded.size());
+        assertEquals(new Customer("c24", "Name24"), loaded.get("c24"));
+    }
+
+    @Test
+    public void nearCacheNeverServesUpdatedEntries() {
+        Config config = new Config();
+        config.setClusterName(randomName());
+        config.getMapConfig("customers").getMapStoreConfig().setEnabled(true).setImplementation(new SQLCustomerMapStore(conn));
+        HzCustomerService.configureNearCache(config, 100, EvictionPolicy.LRU);
+
+        HazelcastInstance hz = factory.newHazelcastInstance(config);
+        HzCustomerService service = new HzCustomerService(hz);
+
+        service.save(new Customer("c1", "Alice"));
+        assertEquals("Alice", service.findCustomer("c1").name()); // miss, populates the near cache
+        assertEquals("Alice", service.findCustomer("c1").name()); // hit
+
+        // Update through the service invalidates the near cached entry
+        service.save(new Customer("c1", "Alicia"));
+        assertEquals("Alicia", service.findCustomer("c1").name());
+
+        NearCacheStats stats = service.nearCacheStats();
+        assertTrue(stats.getHits() >= 1);
+        assertTrue(stats.getMisses() >= 1);
+    }
+
+    @Test
+    public void nearCacheSeesUpdatesFromOtherMembersEventually() {
+        Config config = new Config();
+        config.setClusterName(randomName());
+        HzCustomerService.configureNearCache(config, 100, EvictionPolicy.LRU);
+
+        HazelcastInstance[] cluster = factory.newInstances(config, 2);
+        HzCustomerService writer = new HzCustomerService(cluster[0]);
+        HzCustomerService reader = new HzCustomerService(cluster[1]);
+
+        writer.save(new Customer("c1", "Alice"));
+        assertEquals("Alice", reader.findCustomer("c1").name()); // populates the near cache of the reader
+        assertEquals("Alice", reader.findCustomer("c1").name());
+        assertTrue(reader.nearCacheStats().getHits() >= 1);
+
+        // The invalidation reaches the reader asynchronously
+        writer.save(new Customer("c1", "Alicia"));
+        assertEquals("Alicia", writer.findCustomer("c1").name());
+        assertTrueEventually(() -> assertEquals("Alicia", reader.findCustomer("c1").name()));
+    }
+
+    @Test
+    public void nearCacheNeverServesEvictedEntries()
+            throws SQLException {
+        Config config = new Config();
+        config.setClusterName(randomName());
+        config.getMapConfig("customers").getMapStoreConfig().setEnabled(true).setImplementation(new SQLCustomerMapStore(conn));
+        HzCustomerService.configureNearCache(config, 100, EvictionPolicy.LFU);
+
+        HazelcastInstance hz = factory.newHazelcastInstance(config);
+        CustomerService service = new HzCustomerService(hz);
+
+        service.save(new Customer("c1", "Alice"));
+        assertEquals("Alice", service.findCustomer("c1").name());
+
+        // Change the record behind Hazelcast's back, then evict: the near cache must not keep the old value
+        conn.createStatement().execute("UPDATE customers SET name = 'Bob' WHERE id = 'c1'");
+        hz.getMap("customers").evictAll();
+
+        assertEquals("Bob", service.findCustomer("c1").name());
+    }
+
     @Test
     public void customerServiceWithMapStoreFailure() {
 
@@ -115,4 +608,257 @@ public class CustomerServiceComponentTest {
         assertEquals("Find customer failed", ex.getMessage());
         assertEquals("Injected failure", ex.getCause().getMessage());
     }
+
+    @Test
+    public void circuitBreakerFailsFastWhenStoreIsDown() {
+        // A slow and failing database
+        MapStore<String, Customer> failingMapStore = (MapStore<String, Customer>) mock(MapStore.class);
+        when(failingMapStore.load("c1")).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            throw new HazelcastSqlException("Injected failure", new SQLException("downstream DB error"));
+        });
+        CircuitBreakingMapStore<String, Customer> breaker = new CircuitBreakingMapStore<>(failingMapStore, 3,
+                Duration.ofMinutes(1));
+
+        Config config = new Config();
+        config.setClusterName(randomName());
+        config.getMapConfig("customers").getMapStoreConfig().setEnabled(true).setImplementation(breaker);
+
+        HazelcastInstance hz = factory.newHazelcastInstance(config);
+        CustomerService service = new HzCustomerService(hz);
+
+        for (int i = 0; i < 3; i++) {
+            ServiceException ex = assertThrows(ServiceException.class, () -> service.findCustomer("c1"));
+            assertEquals("Injected failure", ex.getCause().getMessage());
+        }
+        assertEquals(CircuitBreakingMapStore.State.OPEN, breaker.state());
+
+        // Once open, misses fail fast without reaching the database
+        ServiceException ex = assertThrows(ServiceException.class, () -> service.findCustomer("c1"));
+        assertInstanceOf(StoreUnavailableException.class, ex.getCause());
+        verify(failingMapStore, times(3)).load("c1");
+
+        assertEquals(3, breaker.failures());
+        assertEquals(1, breaker.rejections());
+        assertTrue(breaker.maxLoadLatency().toMillis() >= 50);
+    }
+
+    @Test
+    public void queryTimeoutFailsSlowLoadsAndCountsAsBreakerFailure()
+            throws SQLException {
+        CircuitBreakingMapStore<String, Customer> breaker = new CircuitBreakingMapStore<>(
+                new SQLCustomerMapStore(conn).setQueryTimeoutSeconds(1), 3, Duration.ofMinutes(1));
+        Config config = new Config();
+        config.setClusterName(randomName());
+        config.getMapConfig("customers").getMapStoreConfig().setEnabled(true).setImplementation(breaker);
+
+        HazelcastInstance hz = factory.newHazelcastInstance(config);
+        CustomerService service = new HzCustomerService(hz);
+        // the initial key load runs on the first access: finish it while the table is fast, so the timeout hits load
+        assertNull(service.findCustomer("c0"));
+
+        makeCustomersSlow();
+        try {
+            long start = System.nanoTime();
+            ServiceException ex = assertThrows(ServiceException.class, () -> service.findCustomer("c1"));
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).toSeconds() < 5, "The query was not cut short");
+            assertTrue(causedBy(ex, SQLTimeoutException.class));
+            assertEquals(1, breaker.failures());
+        } finally {
+            restoreCustomersTable();
+        }
+    }
+
+    @Test
+    public void queryTimeoutConfiguredFromProperties()
+            throws SQLException {
+        makeCustomersSlow();
+        try {
+            Config config = new Config();
+            config.setClusterName(randomName());
+            config.getMapConfig("customers").getMapStoreConfig().setEnabled(true)
+                  .setClassName(SQLCustomerMapStore.class.getName()).setProperty("jdbc.url", JDBC_URL)
+                  .setProperty("query.timeout.seconds", "1");
+
+            HazelcastInstance hz = factory.newHazelcastInstance(config);
+            CustomerService service = new HzCustomerService(hz);
+
+            ServiceException ex = assertThrows(ServiceException.class, () -> service.findCustomer("c1"));
+            assertTrue(causedBy(ex, SQLTimeoutException.class));
+        } finally {
+            restoreCustomersTable();
+        }
+    }
+
+    @Test
+    public void unknownCustomersDoNotHitTheDatabaseTwice() {
+        SQLCustomerMapStore sqlStore = spy(new SQLCustomerMapStore(conn));
+        NegativeCachingMapStore<String, Customer> store = new NegativeCachingMapStore<>(sqlStore, 1000,
+                Duration.ofMinutes(1));
+
+        Config config = new Config();
+        config.setClusterName(randomName());
+        config.getMapConfig("customers").getMapStoreConfig().setEnabled(true).setImplementation(store);
+
+        HazelcastInstance hz = factory.newHazelcastInstance(config);
+        CustomerService service = new HzCustomerService(hz);
+        HzOrderService orderService = new HzOrderService(hz);
+
+        // Bogus ids, looked up repeatedly by the customer and the order service
+        for (int i = 0; i < 5; i++) {
+            assertNull(service.findCustomer("ghost"));
+            assertThrows(IllegalStateException.class, () -> orderService.placeOrder(new Order("o1", "ghost", "Laptop")));
+        }
+        verify(sqlStore, times(1)).load("ghost");
+        assertEquals(9, store.hits());
+
+        // Saving the customer invalidates the negative entry
+        service.save(new Customer("ghost", "Casper"));
+        hz.getMap("customers").evictAll();
+        assertEquals("Casper", service.findCustomer("ghost").name());
+    }
+
+    @Test
+    public void negativeEntriesDoNotSurvivePartitionMigrations() {
+        // one store per member, as when the store is configured by class name
+        String clusterName = randomName();
+        HazelcastInstance memberA = factory.newHazelcastInstance(negativeCachingConfig(clusterName));
+        CustomerService serviceA = new HzCustomerService(memberA);
+        List<String> ghosts = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ghosts.add("ghost" + i);
+            assertNull(serviceA.findCustomer("ghost" + i)); // remembered as missing by A
+        }
+
+        HazelcastInstance memberB = factory.newHazelcastInstance(negativeCachingConfig(clusterName));
+        waitAllForSafeState(memberA, memberB);
+        String ghost = ghosts.stream()
+                             .filter(id -> memberB.getCluster().getLocalMember()
+                                                  .equals(memberA.getPartitionService().getPartition(id).getOwner()))
+                             .findFirst().orElseThrow();
+
+        // Saved on B, which owns the key now, then the partition moves back to A
+        new HzCustomerService(memberB).save(new Customer(ghost, "Casper"));
+        memberB.shutdown();
+        memberA.getMap("customers").evictAll();
+
+        assertEquals("Casper", serviceA.findCustomer(ghost).name());
+    }
+
+    private Config negativeCachingConfig(String clusterName) {
+        Config config = new Config();
+        config.setClusterName(clusterName);
+        config.getMapConfig("customers").getMapStoreConfig().setEnabled(true)
+              .setImplementation(new NegativeCachingMapStore<>(new SQLCustomerMapStore(conn), 1000, Duration.ofMinutes(1)));
+        return config;
+    }
+
+    @Test
+    public void negativeEntriesExpire() {
+        MapStore<String, Customer> emptyStore = (MapStore<String, Customer>) mock(MapStore.class);
+        NegativeCachingMapStore<String, Customer> store = new NegativeCachingMapStore<>(emptyStore, 1000, Duration.ZERO);
+
+        store.load("ghost");
+        store.load("ghost");
+
+        verify(emptyStore, times(2)).load(anyString());
+        assertEquals(0, store.hits());
+    }
+
+    @Test
+    public void circuitBreakerClosesAfterSuccessfulTrial() {
+        MapStore<String, Customer> flakyMapStore = (MapStore<String, Customer>) mock(MapStore.class);
+        when(flakyMapStore.load("c1")).thenThrow(new HazelcastSqlException("Injected failure", null))
+                                      .thenReturn(new Customer("c1", "Alice"));
+        CircuitBreakingMapStore<String, Customer> breaker = new CircuitBreakingMapStore<>(flakyMapStore, 1,
+                Duration.ZERO);
+
+        assertThrows(HazelcastSqlException.class, () -> breaker.load("c1"));
+        assertEquals(CircuitBreakingMapStore.State.OPEN, breaker.state());
+
+        // the open period is over: the trial load succeeds and closes the breaker
+        assertEquals("Alice", breaker.load("c1").name());
+        assertEquals(CircuitBreakingMapStore.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void customerServiceWithMapStoreFailureAsync() {
+        MapStore<String, Customer> failingMapStore = (MapStore<String, Customer>) mock(MapStore.class);
+        when(failingMapStore.load("c1")).thenThrow(
+                new HazelcastSqlException("Injected failure", new SQLException("downstream DB error")));
+
+        Config config = new Config();
+        config.setClusterName(randomName());
+        config.getMapConfig("customers").getMapStoreConfig().setEnabled(true).setImplementation(failingMapStore);
+
+        HazelcastInstance hz = factory.newHazelcastInstance(config);
+        CustomerService service = new HzCustomerService(hz);
+
+        // The async stage fails with the same ServiceException the sync call throws
+        CompletionException ex = assertThrows(CompletionException.class,
+                () -> service.findCustomerAsync("c1").toCompletableFuture().join());
+
+        ServiceException cause = assertInstanceOf(ServiceException.class, ex.getCause());
+        assertEquals("Find customer failed", cause.getMessage());
+        assertEquals("Injected failure", cause.getCause().getMessage());
+    }
+
+    /**
+     * H2 function spending 5ms per call, used to slow queries down.
+     */
+    public static boolean slow(long ignored)
+            throws InterruptedException {
+        Thread.sleep(5);
+        return true;
+    }
+
+    /**
+     * Replaces the customers table by a view holding c1 that takes about 10s to query.
+     */
+    private void makeCustomersSlow()
+            throws SQLException {
+        conn.createStatement().execute(DROP_TABLE_SQL);
+        conn.createStatement().execute("CREATE TABLE customers_data (id VARCHAR PRIMARY KEY, name VARCHAR)");
+        conn.createStatement().execute("INSERT INTO customers_data (id, name) VALUES ('c1', 'Alice')");
+        conn.createStatement().execute("CREATE ALIAS IF NOT EXISTS SLOW FOR '" + getClass().getName() + ".slow'");
+        conn.createStatement().execute("CREATE VIEW customers AS SELECT id, name FROM customers_data "
+                + "WHERE (SELECT COUNT(*) FROM SYSTEM_RANGE(1, 2000) WHERE SLOW(X)) > 0");
+    }
+
+    private void restoreCustomersTable()
+            throws SQLException {
+        conn.createStatement().execute("DROP VIEW IF EXISTS customers");
+        conn.createStatement().execute("DROP TABLE IF EXISTS customers_data");
+        conn.createStatement().execute(CREATE_TABLE_SQL);
+    }
+
+    private static boolean causedBy(Throwable t, Class<? extends Throwable> target) {
+        while (t != null) {
+            if (target.isInstance(t)) {
+                return true;
+            }
+            t = t.getCause();
+        }
+        return false;
+    }
+
+    private int countRows(String sql)
+            throws SQLException {
+        try (ResultSet rs = conn.createStatement().executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private void insertCustomers(int count)
+            throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO customers (id, name) VALUES (?, ?)")) {
+            for (int i = 0; i < count; i++) {
+                stmt.setString(1, "c" + i);
+                stmt.setString(2, "Name" + i);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
 }
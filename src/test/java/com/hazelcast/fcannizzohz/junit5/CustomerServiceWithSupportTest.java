@@ -9,6 +9,9 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
+
 import static com.hazelcast.test.HazelcastTestSupport.randomName;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -49,4 +52,18 @@ public class CustomerServiceWithSupportTest {
         assertEquals("Alice", sut2.findCustomer("123").name());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void findCustomersTwoNodes() {
+        HazelcastInstance[] cluster = factory.newInstances(new Config().setClusterName(randomName()), 2);
+
+        // data saved in bulk through node1
+        new HzCustomerService(cluster[0]).saveAll(
+                List.of(new Customer("1", "Alice"), new Customer("2", "Bob"), new Customer("3", "Carol")));
+
+        // data retrieved in bulk from node2, unknown ids are left out
+        Map<String, Customer> found = new HzCustomerService(cluster[1]).findCustomers(List.of("1", "3", "missing"));
+        assertEquals(2, found.size());
+        assertEquals("Alice", found.get("1").name());
+        assertEquals("Carol", found.get("3").name());
+    }
+}
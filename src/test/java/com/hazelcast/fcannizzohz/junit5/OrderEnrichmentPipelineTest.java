@@ -3,29 +3,57 @@ package com.hazelcast.fcannizzohz.junit5;
 import com.hazelcast.client.test.TestHazelcastFactory;
 import com.hazelcast.collection.IList;
 import com.hazelcast.config.Config;
+import com.hazelcast.config.MapStoreConfig;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.fcannizzohz.Customer;
 import com.hazelcast.fcannizzohz.EnrichedOrder;
+import com.hazelcast.fcannizzohz.HzOrderService;
 import com.hazelcast.fcannizzohz.Order;
 import com.hazelcast.fcannizzohz.OrderEnrichmentPipeline;
+import com.hazelcast.function.BiFunctionEx;
+import com.hazelcast.internal.serialization.SerializationService;
 import com.hazelcast.jet.JetService;
 import com.hazelcast.jet.Job;
 import com.hazelcast.jet.config.JetConfig;
+import com.hazelcast.jet.config.JobConfig;
+import com.hazelcast.jet.config.ProcessingGuarantee;
+import com.hazelcast.jet.core.JobStatus;
 import com.hazelcast.jet.pipeline.BatchSource;
+import com.hazelcast.jet.pipeline.JournalInitialPosition;
 import com.hazelcast.jet.pipeline.Pipeline;
+import com.hazelcast.jet.pipeline.Sinks;
 import com.hazelcast.jet.pipeline.StreamSource;
+import com.hazelcast.jet.pipeline.StreamStage;
 import com.hazelcast.jet.pipeline.test.AssertionCompletedException;
 import com.hazelcast.jet.pipeline.test.Assertions;
 import com.hazelcast.jet.pipeline.test.TestSources;
 import com.hazelcast.map.IMap;
+import com.hazelcast.map.MapLoader;
+import com.hazelcast.map.listener.EntryAddedListener;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static com.hazelcast.jet.core.test.JetAssert.fail;
+import static com.hazelcast.test.Accessors.getSerializationService;
+import static com.hazelcast.test.HazelcastTestSupport.assertTrueAllTheTime;
+import static com.hazelcast.test.HazelcastTestSupport.assertTrueEventually;
+import static com.hazelcast.test.HazelcastTestSupport.sleepMillis;
+import static com.hazelcast.test.HazelcastTestSupport.sleepSeconds;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class OrderEnrichmentPipelineTest {
@@ -68,6 +96,52 @@ public class OrderEnrichmentPipelineTest {
         assertTrue(result.stream().anyMatch(o -> o.customerName().equals("Bob")));
     }
 
+    @Test
+    public void hashJoinEnrichmentMatchesLookupEnrichment() {
+        HazelcastInstance instance = factory.newHazelcastInstance(config);
+        JetService jet = instance.getJet();
+
+        IMap<String, Customer> customerMap = instance.getMap("customers");
+        customerMap.put("c1", new Customer("c1", "Alice"));
+        customerMap.put("c2", new Customer("c2", "Bob"));
+
+        // a source stage belongs to one pipeline, so each pipeline gets its own
+        Order[] orders = {new Order("o1", "c1", "Laptop"), new Order("o2", "c2", "Phone"),
+                new Order("o3", "unknown", "Tablet")};
+        jet.newJob(OrderEnrichmentPipeline.build(TestSources.items(orders))).join();
+        List<EnrichedOrder> lookedUp = new ArrayList<>(instance.getList("enriched-orders"));
+        instance.getList("enriched-orders").clear();
+
+        jet.newJob(OrderEnrichmentPipeline.buildWithHashJoin(TestSources.items(orders))).join();
+        List<EnrichedOrder> joined = new ArrayList<>(instance.getList("enriched-orders"));
+
+        assertEquals(2, joined.size());
+        assertEquals(new HashSet<>(lookedUp), new HashSet<>(joined));
+    }
+
+    @Test
+    public void enrichedOrdersSpreadOverAPartitionedMap() {
+        OrderEnrichmentPipeline.configureEventJournal(config, "enriched-orders-by-id", 10_000);
+        HazelcastInstance[] cluster = factory.newInstances(config, 2);
+        HazelcastInstance instance = cluster[0];
+
+        IMap<String, Customer> customerMap = instance.getMap("customers");
+        customerMap.put("c1", new Customer("c1", "Alice"));
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            orders.add(new Order("o" + i, "c1", "Product" + i));
+        }
+
+        instance.getJet().newJob(OrderEnrichmentPipeline.build(TestSources.items(orders),
+                OrderEnrichmentPipeline.mapSink("enriched-orders-by-id"))).join();
+
+        IMap<String, EnrichedOrder> result = cluster[1].getMap("enriched-orders-by-id");
+        assertEquals(100, result.size());
+        assertEquals(new EnrichedOrder("o42", "Alice", "Product42"), result.get("o42"));
+        // both members own a share of the enriched orders
+        assertTrue(result.localKeySet().size() < 100);
+    }
+
     @Test
     public void streamingEnrichmentWithInlineAssertion() {
         HazelcastInstance instance = factory.newHazelcastInstance(config);
@@ -98,6 +172,442 @@ public class OrderEnrichmentPipelineTest {
         }
     }
 
+    @Test
+    public void batchedStreamingEnrichmentDropsUnknownCustomers() {
+        HazelcastInstance instance = factory.newHazelcastInstance(config);
+        IMap<String, Customer> customerMap = instance.getMap("customers");
+        customerMap.put("c1", new Customer("c1", "Alice"));
+        customerMap.put("c2", new Customer("c2", "Bob"));
+
+        // every third order belongs to a customer that does not exist
+        StreamSource<Order> source = TestSources.itemStream(100, (ts, seq) -> {
+            String customerId = "c" + (seq % 3 + 1);
+            return new Order("o" + seq, customerId, "Product" + seq);
+        });
+
+        Pipeline pipeline = Pipeline.create();
+        OrderEnrichmentPipeline.enrichBatched(pipeline, source, 16).apply(Assertions.assertCollectedEventually(5, list -> {
+            assertTrue(list.size() >= 10, "Expected at least 10 enriched orders");
+            for (EnrichedOrder order : list) {
+                long seq = Long.parseLong(order.orderId().substring(1));
+                assertEquals(seq % 3 == 0 ? "Alice" : "Bob", order.customerName());
+                assertTrue(seq % 3 != 2, "Order of unknown customer was enriched");
+            }
+        }));
+
+        Job job = instance.getJet().newJob(pipeline);
+
+        try {
+            job.join();
+            fail("Expected job to terminate with AssertionCompletedException");
+        } catch (CompletionException e) {
+            if (!causedBy(e, AssertionCompletedException.class)) {
+                throw e;
+            }
+        }
+    }
+
+    @Test
+    public void projectedStreamingEnrichmentShipsCustomerNames() {
+        HazelcastInstance[] cluster = factory.newInstances(config, 2);
+        IMap<String, Customer> customerMap = cluster[0].getMap("customers");
+        for (int i = 0; i < 10; i++) {
+            customerMap.put("c" + i, new Customer("c" + i, "Name" + i));
+        }
+
+        StreamSource<Order> source = TestSources.itemStream(100, (ts, seq) -> new Order("o" + seq, "c" + (seq % 12),
+                "Product" + seq));
+
+        Pipeline pipeline = Pipeline.create();
+        OrderEnrichmentPipeline.enrichProjected(pipeline, source, 8).apply(Assertions.assertCollectedEventually(5, list -> {
+            assertTrue(list.size() >= 10, "Expected at least 10 enriched orders");
+            for (EnrichedOrder order : list) {
+                long seq = Long.parseLong(order.orderId().substring(1));
+                assertTrue(seq % 12 < 10, "Order of unknown customer was enriched");
+                assertEquals("Name" + seq % 12, order.customerName());
+            }
+        }));
+
+        Job job = cluster[1].getJet().newJob(pipeline);
+
+        try {
+            job.join();
+            fail("Expected job to terminate with AssertionCompletedException");
+        } catch (CompletionException e) {
+            if (!causedBy(e, AssertionCompletedException.class)) {
+                throw e;
+            }
+        }
+    }
+
+    @Test
+    public void streamStreamJoinFollowsCustomerChanges() {
+        OrderEnrichmentPipeline.configureEventJournal(config, "customers", 10_000);
+        HazelcastInstance instance = factory.newHazelcastInstance(config);
+        IMap<String, Customer> customerMap = instance.getMap("customers");
+        customerMap.put("c1", new Customer("c1", "Alice"));
+
+        StreamSource<Order> source = TestSources.itemStream(10, (ts, seq) -> {
+            String customerId = seq % 2 == 0 ? "c1" : "c2";
+            return new Order("o" + seq, customerId, "Product" + seq);
+        });
+        Pipeline pipeline = Pipeline.create();
+        OrderEnrichmentPipeline.enrichWithCustomerChanges(pipeline, source).writeTo(Sinks.list("enriched-orders"));
+
+        Job job = instance.getJet().newJob(pipeline, new JobConfig().setProcessingGuarantee(ProcessingGuarantee.EXACTLY_ONCE)
+                                                                     .setSnapshotIntervalMillis(200));
+        IList<EnrichedOrder> result = instance.getList("enriched-orders");
+        assertTrueEventually(() -> assertTrue(countFor(result, "Alice") > 0));
+        assertEquals(0, countFor(result, "Bob"));
+
+        // The job resumes from a snapshot with the journal offsets restored: c1 is not read again, so it can only be
+        // known from the restored join state, like the orders of c2 held so far
+        job.restart();
+        assertTrueEventually(() -> assertEquals(JobStatus.RUNNING, job.getStatus()));
+        long enrichedBeforeRestart = countFor(result, "Alice");
+        assertTrueEventually(() -> assertTrue(countFor(result, "Alice") > enrichedBeforeRestart));
+
+        // orders of c2 were held until c2 arrives, renames apply to the following orders
+        customerMap.put("c2", new Customer("c2", "Bob"));
+        customerMap.put("c1", new Customer("c1", "Alicia"));
+        assertTrueEventually(() -> {
+            assertTrue(result.stream().anyMatch(o -> o.customerName().equals("Bob") && o.orderId().equals("o1")));
+            assertTrue(countFor(result, "Alicia") > 0);
+        });
+
+        // orders of a removed customer are dropped, as by the IMap lookup
+        customerMap.remove("c1");
+        assertTrueEventually(() -> {
+            long enriched = countFor(result, "Alicia");
+            sleepSeconds(1);
+            assertEquals(enriched, countFor(result, "Alicia"));
+        });
+        job.cancel();
+    }
+
+    @Test
+    public void streamStreamJoinFollowsCustomersLoadedThroughTheMapStore() {
+        Map<String, Customer> database = Map.of("c1", new Customer("c1", "Alice"), "c2", new Customer("c2", "Bob"));
+        OrderEnrichmentPipeline.configureEventJournal(config, "customers", 10_000);
+        config.getMapConfig("customers").getMapStoreConfig().setEnabled(true)
+              .setInitialLoadMode(MapStoreConfig.InitialLoadMode.EAGER)
+              .setImplementation(new MapLoader<String, Customer>() {
+                  @Override
+                  public Customer load(String key) {
+                      return database.get(key);
+                  }
+
+                  @Override
+                  public Map<String, Customer> loadAll(Collection<String> keys) {
+                      Map<String, Customer> loaded = new HashMap<>();
+                      keys.stream().filter(database::containsKey).forEach(k -> loaded.put(k, database.get(k)));
+                      return loaded;
+                  }
+
+                  @Override
+                  public Iterable<String> loadAllKeys() {
+                      return List.of("c1");
+                  }
+              });
+        HazelcastInstance instance = factory.newHazelcastInstance(config);
+        IMap<String, Customer> customerMap = instance.getMap("customers");
+        assertEquals(1, customerMap.size());
+
+        StreamSource<Order> source = TestSources.itemStream(10, (ts, seq) -> {
+            String customerId = seq % 2 == 0 ? "c1" : "c2";
+            return new Order("o" + seq, customerId, "Product" + seq);
+        });
+        Pipeline pipeline = Pipeline.create();
+        OrderEnrichmentPipeline.enrichWithCustomerChanges(pipeline, source).writeTo(Sinks.list("enriched-orders"));
+        Job job = instance.getJet().newJob(pipeline);
+
+        // c1 arrived with the initial load, c2 on the first read through the map
+        IList<EnrichedOrder> result = instance.getList("enriched-orders");
+        assertTrueEventually(() -> assertTrue(countFor(result, "Alice") > 0));
+        assertEquals(0, countFor(result, "Bob"));
+        assertEquals("Bob", customerMap.get("c2").name());
+        assertTrueEventually(() -> assertTrue(countFor(result, "Bob") > 0));
+        job.cancel();
+    }
+
+    @Test
+    public void ordersJournalStreamsPlacedAndConfirmedOrders() {
+        OrderEnrichmentPipeline.configureEventJournal(config, "orders", 10_000);
+        HazelcastInstance[] cluster = factory.newInstances(config, 2);
+        HazelcastInstance instance = cluster[0];
+        instance.getMap("customers").put("c1", new Customer("c1", "Alice"));
+
+        Pipeline pipeline = Pipeline.create();
+        OrderEnrichmentPipeline.enrich(pipeline, JournalInitialPosition.START_FROM_OLDEST)
+                               .writeTo(Sinks.list("enriched-orders"));
+        Job job = instance.getJet().newJob(pipeline);
+
+        HzOrderService orders = new HzOrderService(cluster[1]);
+        orders.placeOrder(new Order("o1", "c1", "Laptop"));
+        orders.placeOrder(new Order("o2", "c1", "Phone"));
+        orders.updateOrder(new Order("o2", "c1", "Tablet"));  // neither placed nor confirmed: filtered out
+        assertTrue(orders.confirmOrder("o1"));
+        assertTrue(orders.confirmOrder("o1"));                // already confirmed: filtered out
+
+        IList<EnrichedOrder> result = instance.getList("enriched-orders");
+        assertTrueEventually(() -> assertEquals(3, result.size()));
+        assertEquals(2, result.stream().filter(o -> o.orderId().equals("o1")).count());
+        assertTrueAllTheTime(() -> assertEquals(3, result.size()), 2);
+        job.cancel();
+    }
+
+    @Test
+    public void exactlyOnceEnrichmentSurvivesMemberFailure() {
+        enrichmentSurvivesMemberFailure(ProcessingGuarantee.EXACTLY_ONCE);
+    }
+
+    @Test
+    public void atLeastOnceEnrichmentSurvivesMemberFailure() {
+        enrichmentSurvivesMemberFailure(ProcessingGuarantee.AT_LEAST_ONCE);
+    }
+
+    private void enrichmentSurvivesMemberFailure(ProcessingGuarantee guarantee) {
+        OrderEnrichmentPipeline.configureEventJournal(config, "orders", 10_000);
+        HazelcastInstance[] cluster = factory.newInstances(config, 3);
+        HazelcastInstance instance = cluster[0];
+        instance.getMap("customers").put("c1", new Customer("c1", "Alice"));
+
+        // Reading from the current position, the orders placed while the job is down are only enriched if the job
+        // resumes from the journal offsets saved in its snapshot
+        Job job = OrderEnrichmentPipeline.startEnrichment(instance.getJet(),
+                OrderEnrichmentPipeline.ordersJournal(JournalInitialPosition.START_FROM_CURRENT), "enriched-orders-by-id",
+                guarantee, 200);
+        HzOrderService orders = new HzOrderService(instance);
+        IMap<String, EnrichedOrder> result = instance.getMap("enriched-orders-by-id");
+        awaitReading(orders, result);
+
+        placeOrders(orders, 0, 100);
+        assertTrueEventually(() -> assertEnriched(result, 0, 100));
+
+        // the job restarts from its last snapshot on the remaining members
+        cluster[2].getLifecycleService().terminate();
+        placeOrders(orders, 100, 200);
+        assertTrueEventually(() -> assertEnriched(result, 100, 200));
+
+        job.suspend();
+        assertTrueEventually(() -> assertEquals(JobStatus.SUSPENDED, job.getStatus()));
+        placeOrders(orders, 200, 300);
+        job.resume();
+
+        assertTrueEventually(() -> assertEnriched(result, 200, 300));
+        assertEquals(new EnrichedOrder("o250", "Alice", "Product250"), result.get("o250"));
+        job.cancel();
+    }
+
+    @Test
+    public void ordersPlacedWhileSuspendedAreLostWithoutGuarantee() {
+        OrderEnrichmentPipeline.configureEventJournal(config, "orders", 10_000);
+        HazelcastInstance[] cluster = factory.newInstances(config, 2);
+        HazelcastInstance instance = cluster[0];
+        instance.getMap("customers").put("c1", new Customer("c1", "Alice"));
+
+        Job job = OrderEnrichmentPipeline.startEnrichment(instance.getJet(),
+                OrderEnrichmentPipeline.ordersJournal(JournalInitialPosition.START_FROM_CURRENT), "enriched-orders-by-id",
+                ProcessingGuarantee.NONE, 200);
+        HzOrderService orders = new HzOrderService(instance);
+        IMap<String, EnrichedOrder> result = instance.getMap("enriched-orders-by-id");
+        awaitReading(orders, result);
+        placeOrders(orders, 0, 100);
+        assertTrueEventually(() -> assertEnriched(result, 0, 100));
+
+        job.suspend();
+        assertTrueEventually(() -> assertEquals(JobStatus.SUSPENDED, job.getStatus()));
+        placeOrders(orders, 100, 200);
+        job.resume();
+        awaitReading(orders, result);
+        placeOrders(orders, 200, 300);
+
+        // without a snapshot the job starts over from the current position: the orders of the gap are never read
+        assertTrueEventually(() -> assertEnriched(result, 200, 300));
+        for (int i = 100; i < 200; i++) {
+            assertFalse(result.containsKey("o" + i), "Order placed while suspended was enriched: o" + i);
+        }
+        job.cancel();
+    }
+
+    /**
+     * Throughput and latency of the enrichment job under each processing guarantee, on the same three-member
+     * cluster and the same number of orders. The figures are printed rather than asserted: they depend on the
+     * machine running the build.
+     */
+    @Test
+    public void measureProcessingGuaranteeOverhead() {
+        OrderEnrichmentPipeline.configureEventJournal(config, "orders", 100_000);
+        HazelcastInstance[] cluster = factory.newInstances(config, 3);
+        HazelcastInstance instance = cluster[0];
+        instance.getMap("customers").put("c1", new Customer("c1", "Alice"));
+        HzOrderService orders = new HzOrderService(instance);
+
+        int orderCount = 2_000;
+        // warm-up, not reported
+        measureEnrichment(instance, orders, ProcessingGuarantee.NONE, "warmup", orderCount);
+        for (ProcessingGuarantee guarantee : ProcessingGuarantee.values()) {
+            long[] latencies = measureEnrichment(instance, orders, guarantee, guarantee.name(), orderCount);
+            long elapsedNanos = latencies[latencies.length - 1];
+            Arrays.sort(latencies, 0, orderCount);
+            System.out.printf("%-13s %d orders in %5d ms, %8.0f orders/s, latency avg %6.2f ms, p99 %6.2f ms%n",
+                    guarantee, orderCount, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    orderCount * 1e9 / elapsedNanos,
+                    Arrays.stream(latencies, 0, orderCount).average().orElse(0) / 1e6,
+                    latencies[(int) (orderCount * 0.99)] / 1e6);
+        }
+    }
+
+    @Test
+    public void measureBatchedEnrichment() {
+        OrderEnrichmentPipeline.configureEventJournal(config, "orders", 100_000);
+        HazelcastInstance[] cluster = factory.newInstances(config, 2);
+        HazelcastInstance instance = cluster[0];
+        IMap<String, Customer> customerMap = instance.getMap("customers");
+        for (int i = 0; i < 10; i++) {
+            customerMap.put("c" + i, new Customer("c" + i, "Name" + i));
+        }
+        HzOrderService orders = new HzOrderService(instance);
+
+        int orderCount = 2_000;
+        // warm-up, not reported
+        measureStage(instance, orders, "warmup", orderCount, OrderEnrichmentPipeline::enrich);
+        long perItemNanos = measureStage(instance, orders, "per-item", orderCount, OrderEnrichmentPipeline::enrich);
+        long batchedNanos = measureStage(instance, orders, "batched", orderCount,
+                (p, source) -> OrderEnrichmentPipeline.enrichBatched(p, source, 64));
+        System.out.printf("enrich        %d orders in %5d ms, %8.0f orders/s%n", orderCount,
+                TimeUnit.NANOSECONDS.toMillis(perItemNanos), orderCount * 1e9 / perItemNanos);
+        System.out.printf("enrichBatched %d orders in %5d ms, %8.0f orders/s%n", orderCount,
+                TimeUnit.NANOSECONDS.toMillis(batchedNanos), orderCount * 1e9 / batchedNanos);
+    }
+
+    @Test
+    public void measureProjectedEnrichment() {
+        OrderEnrichmentPipeline.configureEventJournal(config, "orders", 100_000);
+        HazelcastInstance[] cluster = factory.newInstances(config, 2);
+        HazelcastInstance instance = cluster[0];
+        // a wide customer record: the padding stands for the fields that the projection leaves on the owning member
+        String padding = "x".repeat(4096);
+        IMap<String, Customer> customerMap = instance.getMap("customers");
+        for (int i = 0; i < 10; i++) {
+            customerMap.put("c" + i, new Customer("c" + i + padding, "Name" + i));
+        }
+        HzOrderService orders = new HzOrderService(instance);
+
+        SerializationService serialization = getSerializationService(instance);
+        Customer customer = customerMap.get("c1");
+        System.out.printf("lookup result per order: customer %d bytes, name %d bytes%n",
+                serialization.toData(customer).totalSize(), serialization.toData(customer.name()).totalSize());
+
+        int orderCount = 2_000;
+        // warm-up, not reported
+        measureStage(instance, orders, "warmup", orderCount,
+                (p, source) -> OrderEnrichmentPipeline.enrichBatched(p, source, 64));
+        long batchedNanos = measureStage(instance, orders, "batched", orderCount,
+                (p, source) -> OrderEnrichmentPipeline.enrichBatched(p, source, 64));
+        long projectedNanos = measureStage(instance, orders, "projected", orderCount,
+                (p, source) -> OrderEnrichmentPipeline.enrichProjected(p, source, 64));
+        System.out.printf("enrichBatched   %d orders in %5d ms%n", orderCount,
+                TimeUnit.NANOSECONDS.toMillis(batchedNanos));
+        System.out.printf("enrichProjected %d orders in %5d ms%n", orderCount,
+                TimeUnit.NANOSECONDS.toMillis(projectedNanos));
+    }
+
+    /**
+     * Runs {@code stage} over {@code orderCount} new orders of customers {@code c0} to {@code c9}, read from the orders
+     * journal.
+     *
+     * @return the time taken from the first placement to the last arrival in the sink
+     */
+    private long measureStage(HazelcastInstance instance, HzOrderService orders, String run, int orderCount,
+                              BiFunctionEx<Pipeline, StreamSource<Order>, StreamStage<EnrichedOrder>> stage) {
+        String sinkName = "enriched-orders-" + run;
+        IMap<String, EnrichedOrder> result = instance.getMap(sinkName);
+        Pipeline pipeline = Pipeline.create();
+        stage.apply(pipeline, OrderEnrichmentPipeline.ordersJournal(JournalInitialPosition.START_FROM_CURRENT))
+             .writeTo(OrderEnrichmentPipeline.mapSink(sinkName));
+        Job job = instance.getJet().newJob(pipeline);
+        awaitReading(orders, result);
+        int probes = result.size();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < orderCount; i++) {
+            orders.placeOrder(new Order(run + "-o" + i, "c" + i % 10, "Product" + i));
+        }
+        assertTrueEventually(() -> assertEquals(probes + orderCount, result.size()));
+        long elapsedNanos = System.nanoTime() - start;
+        job.cancel();
+        return elapsedNanos;
+    }
+
+    /**
+     * Runs the enrichment of {@code orderCount} new orders with {@code guarantee}, snapshotting every 100ms.
+     *
+     * @return the latency of each order, from its placement to its arrival in the sink, followed by the time taken
+     * from the first placement to the last arrival
+     */
+    private long[] measureEnrichment(HazelcastInstance instance, HzOrderService orders, ProcessingGuarantee guarantee,
+                                     String run, int orderCount) {
+        String sinkName = "enriched-orders-" + run;
+        IMap<String, EnrichedOrder> result = instance.getMap(sinkName);
+        Map<String, Long> placedAt = new ConcurrentHashMap<>();
+        Map<String, Long> enrichedAt = new ConcurrentHashMap<>();
+        result.addEntryListener((EntryAddedListener<String, EnrichedOrder>) event ->
+                enrichedAt.putIfAbsent(event.getKey(), System.nanoTime()), false);
+
+        Job job = OrderEnrichmentPipeline.startEnrichment(instance.getJet(),
+                OrderEnrichmentPipeline.ordersJournal(JournalInitialPosition.START_FROM_CURRENT), sinkName, guarantee, 100);
+        awaitReading(orders, result);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < orderCount; i++) {
+            String id = run + "-o" + i;
+            placedAt.put(id, System.nanoTime());
+            orders.placeOrder(new Order(id, "c1", "Product" + i));
+        }
+        assertTrueEventually(() -> assertTrue(enrichedAt.keySet().containsAll(placedAt.keySet())));
+        job.cancel();
+
+        long[] latencies = new long[orderCount + 1];
+        long lastArrival = start;
+        for (int i = 0; i < orderCount; i++) {
+            String id = run + "-o" + i;
+            latencies[i] = enrichedAt.get(id) - placedAt.get(id);
+            lastArrival = Math.max(lastArrival, enrichedAt.get(id));
+        }
+        latencies[orderCount] = lastArrival - start;
+        return latencies;
+    }
+
+    /**
+     * Places probe orders until one is enriched, i.e. until the job reads the journal.
+     */
+    private static void awaitReading(HzOrderService orders, IMap<String, EnrichedOrder> result) {
+        assertTrueEventually(() -> {
+            // a new id every time: re-placing an existing order is an update, which the source filters out
+            String id = "probe-" + UUID.randomUUID();
+            orders.placeOrder(new Order(id, "c1", "Probe"));
+            sleepMillis(100);
+            assertTrue(result.containsKey(id));
+        });
+    }
+
+    private static void placeOrders(HzOrderService orders, int from, int to) {
+        for (int i = from; i < to; i++) {
+            orders.placeOrder(new Order("o" + i, "c1", "Product" + i));
+        }
+    }
+
+    private static void assertEnriched(IMap<String, EnrichedOrder> result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            assertTrue(result.containsKey("o" + i), "Order not enriched: o" + i);
+        }
+    }
+
+    private static long countFor(IList<EnrichedOrder> enrichedOrders, String customerName) {
+        return enrichedOrders.stream().filter(o -> o.customerName().equals(customerName)).count();
+    }
+
     private boolean causedBy(Throwable t, Class<? extends Throwable> target) {
         while (t != null) {
             if (target.isInstance(t)) {
@@ -0,0 +1,153 @@
+package com.hazelcast.fcannizzohz.junit5;
+
+import com.hazelcast.client.test.TestHazelcastFactory;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.MapStoreConfig;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.fcannizzohz.Customer;
+import com.hazelcast.fcannizzohz.HzOrderService;
+import com.hazelcast.fcannizzohz.Order;
+import com.hazelcast.fcannizzohz.OrderService;
+import com.hazelcast.fcannizzohz.SQLOrderMapStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.hazelcast.test.HazelcastTestSupport.assertTrueEventually;
+import static com.hazelcast.test.HazelcastTestSupport.randomName;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <p>
+ * Why This is a Component Test:
+ * <ul>
+ *  <li>Involves the component under test (HzOrderService) and its private dependencies (SQLOrderMapStore via Hazelcast)</li>
+ *  <li>Uses a real external dependency (H2) and real Hazelcast instance (not mocked)</li>
+ *  <li>Tests write-behind persistence and reload of orders</li>
+ * </ul>
+ * </p>
+ */
+public class OrderServiceComponentTest {
+
+    private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS orders (id VARCHAR PRIMARY KEY, customer_id VARCHAR, product VARCHAR, confirmed BOOLEAN, version BIGINT)";
+    private static final String DROP_TABLE_SQL = "DROP TABLE IF EXISTS orders";
+    private static final String JDBC_URL = "jdbc:h2:mem:orders;DB_CLOSE_DELAY=-1";
+    private TestHazelcastFactory factory;
+    private Connection conn;
+
+    @BeforeEach
+    void setup()
+            throws SQLException {
+        factory = new TestHazelcastFactory();
+        conn = DriverManager.getConnection(JDBC_URL);
+        conn.createStatement().execute(CREATE_TABLE_SQL);
+    }
+
+    @AfterEach
+    public void teardown()
+            throws SQLException {
+        if (conn != null) {
+            conn.createStatement().execute(DROP_TABLE_SQL);
+            conn.close();
+        }
+        if (factory != null) {
+            factory.shutdownAll();
+        }
+    }
+
+    @Test
+    public void writeBehindPersistsOrdersAndReloadsThem() {
+        Config config = new Config();
+        config.setClusterName(randomName());
+        config.getMapConfig("orders").getMapStoreConfig().setEnabled(true)
+              .setWriteDelaySeconds(1)
+              .setImplementation(new SQLOrderMapStore(conn, 10));
+
+        HazelcastInstance hz = factory.newHazelcastInstance(config);
+        hz.getMap("customers").put("c1", new Customer("c1", "Alice"));
+        OrderService service = new HzOrderService(hz);
+
+        for (int i = 0; i < 25; i++) {
+            service.placeOrder(new Order("o" + i, "c1", "Product" + i));
+        }
+        assertTrue(service.confirmOrder("o0"));
+        hz.getMap("orders").delete("o24");
+
+        assertTrueEventually(() -> {
+            assertEquals(24, countRows("SELECT COUNT(*) FROM orders"));
+            assertEquals(1, countRows("SELECT COUNT(*) FROM orders WHERE id = 'o0' AND confirmed AND version = 1"));
+        });
+
+        // Evict IMap to force reload from MapStore (H2)
+        hz.getMap("orders").evictAll();
+        Order reloaded = service.getOrder("o0");
+        assertEquals(new Order("o0", "c1", "Product0", true, 1), reloaded);
+    }
+
+    @Test
+    public void loadAllKeysPagesThroughTheTable()
+            throws SQLException {
+        insertOrders(95);
+        SQLOrderMapStore store = new SQLOrderMapStore(conn, 10);
+
+        Set<String> keys = new HashSet<>();
+        store.loadAllKeys().forEach(keys::add);
+        assertEquals(95, keys.size());
+
+        List<String> some = new ArrayList<>(List.of("o1", "o50", "o94", "missing"));
+        Map<String, Order> loaded = store.loadAll(some);
+        assertEquals(3, loaded.size());
+        assertEquals(new Order("o50", "c50", "Product50", false, 0), loaded.get("o50"));
+    }
+
+    @Test
+    public void eagerInitialLoadWarmsTheOrders()
+            throws SQLException {
+        insertOrders(200);
+
+        Config config = new Config();
+        config.setClusterName(randomName());
+        config.getMapConfig("orders").getMapStoreConfig().setEnabled(true)
+              .setInitialLoadMode(MapStoreConfig.InitialLoadMode.EAGER)
+              .setImplementation(new SQLOrderMapStore(conn, 50));
+
+        HazelcastInstance[] cluster = factory.newInstances(config, 2);
+
+        assertEquals(200, cluster[0].getMap("orders").size());
+        assertEquals("Product199", new HzOrderService(cluster[1]).getOrder("o199").product());
+    }
+
+    private int countRows(String sql)
+            throws SQLException {
+        try (ResultSet rs = conn.createStatement().executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private void insertOrders(int count)
+            throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO orders (id, customer_id, product, confirmed, version) VALUES (?, ?, ?, FALSE, 0)")) {
+            for (int i = 0; i < count; i++) {
+                stmt.setString(1, "o" + i);
+                stmt.setString(2, "c" + i);
+                stmt.setString(3, "Product" + i);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+}
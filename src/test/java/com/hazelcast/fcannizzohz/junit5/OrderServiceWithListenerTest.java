@@ -1,19 +1,36 @@
 package com.hazelcast.fcannizzohz.junit5;
 
 import com.hazelcast.client.test.TestHazelcastFactory;
+import com.hazelcast.config.Config;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.fcannizzohz.Customer;
 import com.hazelcast.fcannizzohz.HzOrderService;
 import com.hazelcast.fcannizzohz.Order;
+import com.hazelcast.fcannizzohz.OrderBatchingConfig;
 import com.hazelcast.fcannizzohz.OrderService;
+import com.hazelcast.query.Predicates;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.function.Consumer;
 
+import static com.hazelcast.test.HazelcastTestSupport.assertTrueEventually;
+import static com.hazelcast.test.HazelcastTestSupport.generateKeyOwnedBy;
+import static com.hazelcast.test.HazelcastTestSupport.randomName;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
@@ -51,4 +68,147 @@ public class OrderServiceWithListenerTest {
         verify(mockConsumer, timeout(100).only()).accept(any(Order.class));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void orderServiceListenerIsInvokedOnConfirm() {
+        HazelcastInstance instance = factory.newHazelcastInstance();
+        instance.getMap("customers").put("c1", new Customer("c1", "Alice"));
+
+        Consumer<Order> mockConsumer = mock(Consumer.class);
+
+        OrderService sut = new HzOrderService(instance, mockConsumer);
+        sut.placeOrder(new Order("o1", "c1", "Laptop"));
+        // The in-place update still fires the update event
+        sut.confirmOrder("o1");
+
+        verify(mockConsumer, timeout(100).only()).accept(argThat(Order::confirmed));
+    }
+
+    @Test
+    public void filteredSubscriptionsOnlyReceiveMatchingUpdates() {
+        HazelcastInstance instance = factory.newHazelcastInstance();
+        instance.getMap("customers").put("c1", new Customer("c1", "Alice"));
+        instance.getMap("customers").put("c2", new Customer("c2", "Bob"));
+
+        Consumer<Order> confirmedConsumer = mock(Consumer.class);
+        Consumer<String> bobKeysConsumer = mock(Consumer.class);
+
+        HzOrderService sut = new HzOrderService(instance);
+        sut.subscribe(Predicates.equal("confirmed", true), false, confirmedConsumer);
+        sut.subscribeKeys(Predicates.equal("customerId", "c2"), false, bobKeysConsumer);
+
+        sut.placeOrder(new Order("o1", "c1", "Laptop"));
+        sut.placeOrder(new Order("o2", "c2", "Phone"));
+        sut.confirmOrder("o1");
+        sut.updateOrder("o2", o -> new Order(o.id(), o.customerId(), "Tablet"));
+
+        verify(confirmedConsumer, timeout(100).only()).accept(argThat(o -> o.id().equals("o1")));
+        verify(bobKeysConsumer, timeout(100).only()).accept(eq("o2"));
+    }
+
+    @Test
+    public void localSubscriptionOnlyReceivesOwnedUpdates() {
+        HazelcastInstance[] cluster = factory.newInstances(new Config().setClusterName(randomName()), 2);
+        HazelcastInstance owner = cluster[0];
+        HazelcastInstance other = cluster[1];
+        owner.getMap("customers").put("c1", new Customer("c1", "Alice"));
+
+        // an order id owned by the first member
+        String orderId = generateKeyOwnedBy(owner);
+
+        Consumer<String> ownerConsumer = mock(Consumer.class);
+        Consumer<String> otherConsumer = mock(Consumer.class);
+        new HzOrderService(owner).subscribeKeys(null, true, ownerConsumer);
+        new HzOrderService(other).subscribeKeys(null, true, otherConsumer);
+
+        HzOrderService sut = new HzOrderService(other);
+        sut.placeOrder(new Order(orderId, "c1", "Laptop"));
+        sut.confirmOrder(orderId);
+
+        verify(ownerConsumer, timeout(100).only()).accept(eq(orderId));
+        verify(otherConsumer, after(100).never()).accept(any());
+    }
+
+    @Test
+    public void batchedListenerReceivesAllUpdates() {
+        HazelcastInstance instance = factory.newHazelcastInstance();
+        instance.getMap("customers").put("c1", new Customer("c1", "Alice"));
+
+        List<List<Order>> batches = new CopyOnWriteArrayList<>();
+        try (HzOrderService sut = new HzOrderService(instance, batches::add,
+                new OrderBatchingConfig(4, Duration.ofMillis(50), 100))) {
+            for (int i = 0; i < 10; i++) {
+                sut.placeOrder(new Order("o" + i, "c1", "Laptop"));
+                sut.confirmOrder("o" + i);
+            }
+
+            assertTrueEventually(() -> assertEquals(10, sut.dispatcher().delivered()));
+            assertTrue(batches.stream().allMatch(b -> b.size() <= 4));
+            assertTrue(batches.stream().flatMap(List::stream).allMatch(Order::confirmed));
+            assertEquals(0, sut.dispatcher().dropped());
+        }
+    }
+
+    @Test
+    public void batchedListenerDropsWhenQueueIsFull()
+            throws Exception {
+        HazelcastInstance instance = factory.newHazelcastInstance();
+        instance.getMap("customers").put("c1", new Customer("c1", "Alice"));
+
+        // A consumer stuck on the first batch lets the queue fill up
+        CountDownLatch release = new CountDownLatch(1);
+        Consumer<List<Order>> slowConsumer = batch -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        HzOrderService sut = new HzOrderService(instance, slowConsumer, new OrderBatchingConfig(1, Duration.ZERO, 2));
+        try (sut) {
+            for (int i = 0; i < 10; i++) {
+                sut.placeOrder(new Order("o" + i, "c1", "Laptop"));
+                sut.confirmOrder("o" + i);
+            }
+
+            assertTrueEventually(() -> assertEquals(10, sut.dispatcher().dropped() + sut.dispatcher().queued() + 1));
+            assertTrue(sut.dispatcher().dropped() > 0);
+        }
+        // Closing interrupts the stuck batch and counts the updates still queued as dropped
+        assertEquals(0, sut.dispatcher().queued());
+        assertEquals(10, sut.dispatcher().delivered() + sut.dispatcher().dropped());
+    }
+
+    @Test
+    public void updatesRacingCloseAreDeliveredOrDropped()
+            throws Exception {
+        HazelcastInstance instance = factory.newHazelcastInstance();
+        HzOrderService sut = new HzOrderService(instance, batch -> { },
+                new OrderBatchingConfig(16, Duration.ofMillis(1), 1_000));
+
+        // Writers keep handing updates to the dispatcher while it is closed under them
+        int writers = 4;
+        int updatesPerWriter = 20_000;
+        CountDownLatch started = new CountDownLatch(writers);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            Thread thread = new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < updatesPerWriter; i++) {
+                    sut.dispatcher().accept(new Order("o" + writer + "-" + i, "c1", "Laptop"));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        started.await();
+        sut.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Nothing is left behind in the queue, every update is accounted for exactly once
+        assertEquals(0, sut.dispatcher().queued());
+        assertEquals((long) writers * updatesPerWriter, sut.dispatcher().delivered() + sut.dispatcher().dropped());
+    }
+}